@@ -1,28 +1,40 @@
 package se.perfektum.econostats;
 
 import static se.perfektum.econostats.dao.googledrive.GoogleDriveDao.APPLICATION_VND_GOOGLE_APPS_FOLDER;
-import static se.perfektum.econostats.utils.FileUtils.saveFileLocally;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import se.perfektum.econostats.aggregation.RollupStore;
+import se.perfektum.econostats.bank.CsvDirectoryWatcher;
 import se.perfektum.econostats.bank.CsvReader;
 import se.perfektum.econostats.configuration.AppProperties;
 import se.perfektum.econostats.dao.AccountTransactionDao;
 import se.perfektum.econostats.dao.googledrive.MimeTypes;
 import se.perfektum.econostats.domain.AccountTransaction;
 import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.merge.FingerprintBloomFilter;
+import se.perfektum.econostats.merge.MergeResult;
+import se.perfektum.econostats.spreadsheet.SpreadsheetDigest;
 import se.perfektum.econostats.spreadsheet.SpreadsheetManager;
 import se.perfektum.econostats.utils.JsonUtils;
 
@@ -45,6 +57,17 @@ public class EconoStatsController {
     private String payeeFiltersFileName;
     private String csvPath;
     private String csvFilePath;
+    private boolean watchCsvPath;
+    private long watchQuietPeriod;
+    private String fingerprintFilterPath;
+    private long fingerprintFilterSize;
+    private double fingerprintFilterFalsePositiveRate;
+    private String rollupsPath;
+    private String spreadsheetDigestPath;
+    private boolean keepLocalCopies;
+    private boolean updateSpreadsheet;
+
+    private CsvDirectoryWatcher csvDirectoryWatcher;
 
     private static final String ACCOUNT_TRANSACTIONS = "accountTransactions";
 
@@ -106,6 +129,20 @@ public class EconoStatsController {
         return null;
     }
 
+    /**
+     * Parses all csv files in a directory in parallel.
+     *
+     * @return the merged AccountTransactions of all files, ordered by date
+     */
+    public List<AccountTransaction> fetchAccountTransactionsFromDirectory(String directory) {
+        try {
+            return csvReader.getAccountTransactionsFromDirectory(directory, null);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
     private List<PayeeFilter> fetchPayeeFilters() {
         try {
             String fileId = getFileId(payeeFiltersFileName, MimeTypes.APPLICATION_JSON.toString());
@@ -129,7 +166,10 @@ public class EconoStatsController {
         }
     }
 
-    public void generateRecurringTransactions(List<PayeeFilter> payeeFilters, List<AccountTransaction> accountTransactionsDelta) throws Exception {
+    /**
+     * Synchronized, as the csv watcher generates from its own thread, and every generation reads and writes the same local and Drive files.
+     */
+    public synchronized void generateRecurringTransactions(List<PayeeFilter> payeeFilters, List<AccountTransaction> accountTransactionsDelta) throws Exception {
         String folderId = getFileId(storagePath, APPLICATION_VND_GOOGLE_APPS_FOLDER);
 
         payeeFilters = payeeFilters.stream().filter(f -> f.isActive()).collect(Collectors.toList());
@@ -151,50 +191,232 @@ public class EconoStatsController {
         if (transactionFileId == null && accountTransactionsDelta != null && !accountTransactionsDelta.isEmpty()) {
             LOGGER.debug(String.format("File '%s' did not exist, no merge needed.", transactionsFilename));
 
-            // save imported transactions locally
-            LOGGER.debug(String.format("Storing file '%s' to local disk.", transactionsPath));
-            String convertedTransactions = JsonUtils.convertObjectsToJson(accountTransactionsDelta, ACCOUNT_TRANSACTIONS);
-            File filePathTransactions = saveFileLocally(transactionsPath, convertedTransactions);
+            // sort imported transactions by date, as later merges expect
+            accountTransactionsDelta = new ArrayList<>(accountTransactionsDelta);
+            accountTransactionsDelta.sort(Comparator.comparing(AccountTransaction::getDate));
+            String json = JsonUtils.convertObjectsToJson(accountTransactionsDelta, ACCOUNT_TRANSACTIONS);
+            byte[] convertedTransactions = json.getBytes(StandardCharsets.UTF_8);
+            saveLocalCopy(transactionsPath, convertedTransactions);
 
             // save imported transactions to Drive
-            accountTransactionDao.createFile(filePathTransactions, Arrays.asList(folderId), MimeTypes.APPLICATION_JSON.toString(), MimeTypes.APPLICATION_JSON.toString());
-
-            // create spreadsheet
-            File filePathSpreadsheet = spreadsheetManager.createNewSpreadsheet(recurringTransactionsPath, accountTransactionsDelta, payeeFilters);
-
-            // save/update spreadsheet to Drive
-            if (spreadsheetFileId == null) {
-                accountTransactionDao.createFile(filePathSpreadsheet, Arrays.asList(folderId), MimeTypes.GOOGLE_API_SPREADSHEET.toString(), MimeTypes.TEXT_ODS.toString());
-            } else {
-                accountTransactionDao.updateFile(spreadsheetFileId, new File(recurringTransactionsPath), MimeTypes.TEXT_ODS.toString());
-            }
+            accountTransactionDao.createFile(transactionsFilename, new ByteArrayInputStream(convertedTransactions), Arrays.asList(folderId), MimeTypes.APPLICATION_JSON.toString(),
+                    MimeTypes.APPLICATION_JSON.toString());
+            String storedDigest = JsonUtils.digest(json);
+            saveFingerprintFilter(accountTransactionsDelta, null, storedDigest);
+            RollupStore rollups = RollupStore.of(accountTransactionsDelta, payeeFilters, storedDigest);
+            saveRollups(rollups);
+
+            uploadSpreadsheet(folderId, spreadsheetFileId, rollups, payeeFilters);
+            saveSpreadsheetDigest(SpreadsheetDigest.of(accountTransactionsDelta, payeeFilters));
         } else {
             // get transactions from Drive
             String transactions = accountTransactionDao.getFile(transactionFileId);
+            String storedDigest = JsonUtils.digest(transactions);
 
             List<AccountTransaction> accountTransactions;
+            RollupStore rollups = loadRollups();
             // merge transactions with imported transactions
             if (accountTransactionsDelta != null && !accountTransactionsDelta.isEmpty()) {
-                accountTransactions = spreadsheetManager.mergeAccountTransactions(accountTransactionsDelta, transactions);
-                // save merged transactions locally
-                String convertedTransactions = JsonUtils.convertObjectsToJson(accountTransactions, ACCOUNT_TRANSACTIONS);
-                FileUtils.writeStringToFile(new java.io.File(transactionsPath), convertedTransactions, "UTF-8");
-
-                // overwrite transaction file on Drive
-                accountTransactionDao.updateFile(transactionFileId, new File(transactionsPath), MimeTypes.APPLICATION_JSON.toString());
+                FingerprintBloomFilter storedFingerprints = loadFingerprintFilter(storedDigest);
+                MergeResult<List<AccountTransaction>> mergeResult = spreadsheetManager.mergeAccountTransactions(accountTransactionsDelta, transactions, storedFingerprints);
+                accountTransactions = mergeResult.getTransactions();
+                if (mergeResult.getAddedTransactions().isEmpty()) {
+                    LOGGER.info(String.format("No new transactions imported, file '%s' is left as it is.", transactionsFilename));
+                    if (storedFingerprints == null) {
+                        saveFingerprintFilter(accountTransactions, null, storedDigest);
+                    }
+                } else {
+                    String json = JsonUtils.convertObjectsToJson(accountTransactions, ACCOUNT_TRANSACTIONS);
+                    byte[] convertedTransactions = json.getBytes(StandardCharsets.UTF_8);
+                    saveLocalCopy(transactionsPath, convertedTransactions);
+
+                    // overwrite transaction file on Drive
+                    accountTransactionDao.updateFile(transactionFileId, new ByteArrayInputStream(convertedTransactions), MimeTypes.APPLICATION_JSON.toString());
+                    // the filter now holds the merged transactions, which are only stored once the update has succeeded
+                    String mergedDigest = JsonUtils.digest(json);
+                    saveFingerprintFilter(accountTransactions, storedFingerprints, mergedDigest);
+
+                    // only the added transactions need to be rolled up, if the rollups are of the transactions they were merged into
+                    if (rollups != null && storedDigest.equals(rollups.getHistoryDigest())) {
+                        rollups.add(mergeResult.getAddedTransactions(), payeeFilters, mergedDigest);
+                    }
+                    storedDigest = mergedDigest;
+                }
             } else {
                 accountTransactions = JsonUtils.getJsonElement(AccountTransaction.class, transactions);
             }
 
-            // create spreadsheet
-            File filePathSpreadsheet = spreadsheetManager.createNewSpreadsheet(recurringTransactionsPath, accountTransactions, payeeFilters);
+            // nothing to do if the spreadsheet on Drive was created from the same transactions and filters
+            SpreadsheetDigest digest = SpreadsheetDigest.of(accountTransactions, payeeFilters);
+            if (spreadsheetFileId != null && digest.equals(loadSpreadsheetDigest())) {
+                LOGGER.info(String.format("Transactions and payee filters are unchanged since file '%s' was created, skipping it.", spreadsheetFilename));
+                return;
+            }
 
-            // save/update spreadsheet to Drive
-            if (spreadsheetFileId == null) {
-                accountTransactionDao.createFile(filePathSpreadsheet, Arrays.asList(folderId), MimeTypes.GOOGLE_API_SPREADSHEET.toString(), MimeTypes.TEXT_ODS.toString());
+            // roll up filters that are new or have been edited since the last time
+            if (rollups == null) {
+                rollups = RollupStore.of(accountTransactions, payeeFilters, storedDigest);
             } else {
-                accountTransactionDao.updateFile(spreadsheetFileId, new File(recurringTransactionsPath), MimeTypes.TEXT_ODS.toString());
+                rollups.update(accountTransactions, payeeFilters, storedDigest);
+            }
+            saveRollups(rollups);
+
+            uploadSpreadsheet(folderId, spreadsheetFileId, rollups, payeeFilters);
+            saveSpreadsheetDigest(digest);
+        }
+    }
+
+    /**
+     * Creates the spreadsheet in memory and uploads it straight to Drive, replacing the previous spreadsheet if there is one. If enabled, the local copy
+     * of the previous spreadsheet is updated instead, so only the sheets of years that have changed are created again.
+     */
+    private void uploadSpreadsheet(String folderId, String spreadsheetFileId, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        ByteArrayOutputStream spreadsheet = new ByteArrayOutputStream();
+        if (updateSpreadsheet && keepLocalCopies) {
+            spreadsheetManager.updateSpreadsheet(spreadsheet, new File(recurringTransactionsPath), rollups, payeeFilters);
+        } else {
+            spreadsheetManager.writeSpreadsheet(spreadsheet, rollups, payeeFilters);
+        }
+        byte[] content = spreadsheet.toByteArray();
+        saveLocalCopy(recurringTransactionsPath, content);
+
+        if (spreadsheetFileId == null) {
+            accountTransactionDao.createFile(spreadsheetFilename, new ByteArrayInputStream(content), Arrays.asList(folderId), MimeTypes.GOOGLE_API_SPREADSHEET.toString(),
+                    MimeTypes.TEXT_ODS.toString());
+        } else {
+            accountTransactionDao.updateFile(spreadsheetFileId, new ByteArrayInputStream(content), MimeTypes.TEXT_ODS.toString());
+        }
+    }
+
+    /**
+     * Saves a copy of an uploaded file locally, if enabled in the configuration. Nothing is read back from the copy, so failing to save it is not an
+     * error.
+     */
+    private void saveLocalCopy(String path, byte[] content) {
+        if (!keepLocalCopies) {
+            return;
+        }
+        LOGGER.debug(String.format("Storing file '%s' to local disk.", path));
+        try {
+            Files.write(Paths.get(path), content);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not save local copy '%s'", path), e);
+        }
+    }
+
+    /**
+     * Starts importing new csv files in the csv path automatically, if enabled in the configuration. Each batch of files is merged with the stored
+     * transactions and the recurring transactions are generated once per batch. Must not be called before the JavaFX toolkit has been started.
+     */
+    public void startCsvWatcher() {
+        if (!watchCsvPath || csvDirectoryWatcher != null) {
+            return;
+        }
+        csvDirectoryWatcher = new CsvDirectoryWatcher(Paths.get(csvPath), csvReader, watchQuietPeriod, delta -> {
+            try {
+                generateRecurringTransactions(getPayeeFiltersFromFxThread(), delta);
+            } catch (Exception e) {
+                LOGGER.error(String.format("Could not generate recurring transactions from %s imported transactions", delta.size()), e);
             }
+        });
+        try {
+            csvDirectoryWatcher.start();
+        } catch (IOException e) {
+            LOGGER.error(String.format("Could not watch '%s' for new csv files", csvPath), e);
+            csvDirectoryWatcher = null;
+        }
+    }
+
+    /**
+     * The PayeeFilters are edited on the JavaFX thread, so they are copied there before being used from another thread.
+     */
+    private static List<PayeeFilter> getPayeeFiltersFromFxThread() throws Exception {
+        FutureTask<List<PayeeFilter>> copy = new FutureTask<>(() -> se.perfektum.econostats.gui.model.PayeeFilter.convertToDomain(payeeFilters));
+        Platform.runLater(copy);
+        return copy.get();
+    }
+
+    public void stopCsvWatcher() {
+        if (csvDirectoryWatcher != null) {
+            try {
+                csvDirectoryWatcher.close();
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not stop watching '%s'", csvPath), e);
+            }
+            csvDirectoryWatcher = null;
+        }
+    }
+
+    /**
+     * @param storedDigest Digest of the stored transactions
+     * @return the fingerprint filter of the stored transactions, or null if there is none or it was saved for other stored transactions
+     */
+    private FingerprintBloomFilter loadFingerprintFilter(String storedDigest) {
+        FingerprintBloomFilter filter;
+        try {
+            filter = FingerprintBloomFilter.readFrom(Paths.get(fingerprintFilterPath));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not read fingerprint filter '%s', it will be rebuilt", fingerprintFilterPath), e);
+            return null;
+        }
+        if (filter != null && !storedDigest.equals(filter.getHistoryDigest())) {
+            LOGGER.info(String.format("Fingerprint filter '%s' was saved for other stored transactions, it will be rebuilt", fingerprintFilterPath));
+            return null;
+        }
+        return filter;
+    }
+
+    /**
+     * Saves the fingerprint filter of the stored transactions, with the digest of the stored transactions. Only to be called once the transactions have
+     * been stored. The filter is rebuilt if there is none, or it holds more than it is sized for.
+     */
+    private void saveFingerprintFilter(List<AccountTransaction> storedAccountTransactions, FingerprintBloomFilter filter, String storedDigest) {
+        if (filter == null || filter.isSaturated()) {
+            filter = FingerprintBloomFilter.of(storedAccountTransactions, fingerprintFilterSize, fingerprintFilterFalsePositiveRate);
+        }
+        filter.setHistoryDigest(storedDigest);
+        try {
+            filter.writeTo(Paths.get(fingerprintFilterPath));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not save fingerprint filter '%s'", fingerprintFilterPath), e);
+        }
+    }
+
+    private RollupStore loadRollups() {
+        try {
+            return RollupStore.readFrom(Paths.get(rollupsPath));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not read rollups '%s', they will be rebuilt", rollupsPath), e);
+            return null;
+        }
+    }
+
+    private void saveRollups(RollupStore rollups) {
+        try {
+            rollups.writeTo(Paths.get(rollupsPath));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not save rollups '%s'", rollupsPath), e);
+        }
+    }
+
+    private SpreadsheetDigest loadSpreadsheetDigest() {
+        try {
+            return SpreadsheetDigest.readFrom(Paths.get(spreadsheetDigestPath));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not read spreadsheet digest '%s', the spreadsheet will be created again", spreadsheetDigestPath), e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the digest of what the uploaded spreadsheet was created from. Only to be called once the spreadsheet has been uploaded, so a failed upload
+     * is retried the next time.
+     */
+    private void saveSpreadsheetDigest(SpreadsheetDigest digest) {
+        try {
+            digest.writeTo(Paths.get(spreadsheetDigestPath));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not save spreadsheet digest '%s'", spreadsheetDigestPath), e);
         }
     }
 
@@ -235,5 +457,14 @@ public class EconoStatsController {
         payeeFiltersFileName = appProperties.getPayeeFiltersFileName();
         csvPath = appProperties.getCsvPath();
         csvFilePath = appProperties.getCsvFilePath();
+        watchCsvPath = appProperties.isWatchCsvPath();
+        watchQuietPeriod = appProperties.getWatchQuietPeriod();
+        fingerprintFilterPath = appProperties.getFingerprintFilterPath();
+        fingerprintFilterSize = appProperties.getFingerprintFilterSize();
+        fingerprintFilterFalsePositiveRate = appProperties.getFingerprintFilterFalsePositiveRate();
+        rollupsPath = appProperties.getRollupsPath();
+        spreadsheetDigestPath = appProperties.getSpreadsheetDigestPath();
+        keepLocalCopies = appProperties.isKeepLocalCopies();
+        updateSpreadsheet = appProperties.isUpdateSpreadsheet();
     }
 }
\ No newline at end of file
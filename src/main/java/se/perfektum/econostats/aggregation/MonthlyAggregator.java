@@ -0,0 +1,101 @@
+package se.perfektum.econostats.aggregation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.matching.Classification;
+
+/**
+ * Sums the matched transactions of a {@link Classification} per year, month and filter, independent of how the totals are presented.
+ * <p>
+ * Each amount is truncated to whole units before it is added, as the spreadsheet has always shown whole units. A transaction matched by several
+ * filters is added to each of their columns, but only once to filters that are equal.
+ */
+public class MonthlyAggregator {
+    private static final int MONTHS = 12;
+    private static final long MINOR_UNITS = 100;
+
+    /**
+     * @return one aggregate per year with matched transactions, in order of year
+     */
+    public List<YearAggregate> aggregate(Classification classification) {
+        List<YearAggregate> aggregates = new ArrayList<>();
+        for (Map.Entry<Year, List<Integer>> entry : groupByYear(classification).entrySet()) {
+            aggregates.add(aggregate(entry.getKey(), entry.getValue(), classification));
+        }
+        return aggregates;
+    }
+
+    /**
+     * @return the absolute amount, truncated to whole units, in minor units
+     */
+    static long toMinorUnits(BigDecimal amount) {
+        return amount.abs().setScale(0, RoundingMode.DOWN).longValueExact() * MINOR_UNITS;
+    }
+
+    /**
+     * @return the matched transactions, by their index in the classification, grouped by year
+     */
+    private static Map<Year, List<Integer>> groupByYear(Classification classification) {
+        Map<Year, List<Integer>> matchedByYear = new TreeMap<>();
+        for (int row = 0; row < classification.getMatched().size(); row++) {
+            matchedByYear.computeIfAbsent(Year.of(classification.getMatched().get(row).getDate().getYear()), y -> new ArrayList<>()).add(row);
+        }
+        return matchedByYear;
+    }
+
+    YearAggregate aggregate(Year year, List<Integer> rows, Classification classification) {
+        List<PayeeFilter> payeeFilters = adaptPayeeFilters(rows, classification);
+        payeeFilters.sort(Comparator.comparing(PayeeFilter::getAlias));
+
+        // Column of each classification filter, -1 if it has no column this year. Equal filters share a column.
+        int[] columns = classification.getPayeeFilters().stream().mapToInt(payeeFilters::indexOf).toArray();
+        long[][] totals = new long[MONTHS][payeeFilters.size()];
+        int[][] counts = new int[MONTHS][payeeFilters.size()];
+        boolean[] accumulated = new boolean[payeeFilters.size()];
+        for (int row : rows) {
+            AccountTransaction transaction = classification.getMatched().get(row);
+            int month = transaction.getDate().getMonthValue() - 1;
+            long amount = toMinorUnits(transaction.getAmount());
+            int[] filters = classification.getMatchingFilters(row);
+            for (int filter : filters) {
+                int column = columns[filter];
+                if (column < 0 || accumulated[column]) {
+                    continue;
+                }
+                accumulated[column] = true;
+                totals[month][column] += amount;
+                counts[month][column]++;
+            }
+            for (int filter : filters) {
+                if (columns[filter] >= 0) {
+                    accumulated[columns[filter]] = false;
+                }
+            }
+        }
+        return new YearAggregate(year, payeeFilters, totals, counts);
+    }
+
+    /**
+     * @return the filters matching any of the given matched transactions
+     */
+    private List<PayeeFilter> adaptPayeeFilters(List<Integer> rows, Classification classification) {
+        Set<PayeeFilter> adaptedFilters = new HashSet<>();
+        for (int row : rows) {
+            for (int filter : classification.getMatchingFilters(row)) {
+                adaptedFilters.add(classification.getPayeeFilters().get(filter));
+            }
+        }
+        return new ArrayList<>(adaptedFilters);
+    }
+}
@@ -0,0 +1,306 @@
+package se.perfektum.econostats.aggregation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.matching.Classification;
+import se.perfektum.econostats.matching.PayeeMatcher;
+import se.perfektum.econostats.matching.TransactionClassifier;
+
+/**
+ * Monthly totals per PayeeFilter of all stored transactions, persisted next to them so the spreadsheet can be created without going through the whole
+ * history. After a merge only the added transactions are rolled up, and the whole history is only rolled up for a filter that is new or whose payees
+ * have been edited.
+ * <p>
+ * Filters are identified by their payees, ignoring case and order, so renaming a filter keeps its rollup. The excluded payees of all filters apply to
+ * every filter, so the whole store is rebuilt when they change. Like the fingerprint filter, the store is saved with the digest of the stored history
+ * it holds (see {@link se.perfektum.econostats.utils.JsonUtils#digest(String)}), and a store saved for another history is stale and is rebuilt.
+ */
+public class RollupStore {
+    final Logger LOGGER = LoggerFactory.getLogger(RollupStore.class);
+
+    private static final int FORMAT_VERSION = 2;
+    private static final int TOTAL = 0;
+    private static final int COUNT = 1;
+    private static final Gson GSON = new Gson();
+
+    private String historyDigest;
+    private Set<String> excludedPayees;
+    // Total in minor units and number of transactions, by filter key and month
+    private final Map<String, Map<YearMonth, long[]>> rollups = new HashMap<>();
+
+    private RollupStore(Set<String> excludedPayees) {
+        this.excludedPayees = excludedPayees;
+    }
+
+    /**
+     * Rolls up all stored transactions for the given filters.
+     *
+     * @param historyDigest Digest of the stored transactions, or null if the store is never updated
+     */
+    public static RollupStore of(List<AccountTransaction> storedAccountTransactions, List<PayeeFilter> payeeFilters, String historyDigest) {
+        RollupStore store = new RollupStore(excludedPayeesOf(payeeFilters));
+        store.rollUp(storedAccountTransactions, payeeFilters, keysOf(payeeFilters));
+        store.historyDigest = historyDigest;
+        return store;
+    }
+
+    /**
+     * Rolls up transactions that have been added to the stored ones, for the filters already in the store. Filters that are not are rolled up from the
+     * whole history by {@link #update(List, List, String)}. Must only be called if the store holds the stored transactions the added ones were merged
+     * into.
+     *
+     * @param historyDigest Digest of the stored transactions, including the added ones
+     */
+    public void add(List<AccountTransaction> addedAccountTransactions, List<PayeeFilter> payeeFilters, String historyDigest) {
+        Set<String> keys = keysOf(payeeFilters);
+        keys.retainAll(rollups.keySet());
+        rollUp(addedAccountTransactions, payeeFilters, keys);
+        this.historyDigest = historyDigest;
+    }
+
+    /**
+     * Brings the store up to date with the stored transactions and the current filters. Filters that are new or have been edited are rolled up from
+     * the stored transactions, and filters that are gone are dropped. Everything is rolled up again if the store was saved for other stored
+     * transactions or the excluded payees have changed.
+     *
+     * @param historyDigest Digest of the stored transactions
+     */
+    public void update(List<AccountTransaction> storedAccountTransactions, List<PayeeFilter> payeeFilters, String historyDigest) {
+        Set<String> currentExcludedPayees = excludedPayeesOf(payeeFilters);
+        if (!historyDigest.equals(this.historyDigest) || !excludedPayees.equals(currentExcludedPayees)) {
+            LOGGER.info(String.format("Rollups are stale or excluded payees have changed, rolling up all %d transactions again", storedAccountTransactions.size()));
+            rollups.clear();
+            excludedPayees = currentExcludedPayees;
+            this.historyDigest = historyDigest;
+            rollUp(storedAccountTransactions, payeeFilters, keysOf(payeeFilters));
+            return;
+        }
+
+        Set<String> keys = keysOf(payeeFilters);
+        rollups.keySet().retainAll(keys);
+        keys.removeAll(rollups.keySet());
+        if (!keys.isEmpty()) {
+            LOGGER.info(String.format("Rolling up %d transactions for %d new or edited payee filters", storedAccountTransactions.size(), keys.size()));
+            rollUp(storedAccountTransactions, payeeFilters, keys);
+        }
+    }
+
+    /**
+     * @return the digest of the stored transactions rolled up
+     */
+    public String getHistoryDigest() {
+        return historyDigest;
+    }
+
+    /**
+     * Creates the same aggregates as {@link MonthlyAggregator#aggregate(Classification)} would for the stored transactions, from the rollups.
+     *
+     * @throws IllegalStateException if a filter has not been rolled up
+     */
+    public List<YearAggregate> toAggregates(List<PayeeFilter> payeeFilters) {
+        // Filters with transactions, by year
+        Map<Year, Set<PayeeFilter>> filtersByYear = new TreeMap<>();
+        for (PayeeFilter filter : payeeFilters) {
+            for (Map.Entry<YearMonth, long[]> month : getRollup(filter).entrySet()) {
+                if (month.getValue()[COUNT] > 0) {
+                    filtersByYear.computeIfAbsent(Year.of(month.getKey().getYear()), y -> new HashSet<>()).add(filter);
+                }
+            }
+        }
+
+        List<YearAggregate> aggregates = new ArrayList<>();
+        for (Map.Entry<Year, Set<PayeeFilter>> entry : filtersByYear.entrySet()) {
+            List<PayeeFilter> columns = new ArrayList<>(entry.getValue());
+            columns.sort(Comparator.comparing(PayeeFilter::getAlias));
+            long[][] totals = new long[Month.values().length][columns.size()];
+            int[][] counts = new int[Month.values().length][columns.size()];
+            for (int column = 0; column < columns.size(); column++) {
+                Map<YearMonth, long[]> rollup = getRollup(columns.get(column));
+                for (Month month : Month.values()) {
+                    long[] values = rollup.get(entry.getKey().atMonth(month));
+                    if (values != null) {
+                        totals[month.ordinal()][column] = values[TOTAL];
+                        counts[month.ordinal()][column] = (int) values[COUNT];
+                    }
+                }
+            }
+            aggregates.add(new YearAggregate(entry.getKey(), columns, totals, counts));
+        }
+        return aggregates;
+    }
+
+    /**
+     * Writes the store through a temporary file, so a failed write never leaves a corrupt store behind.
+     */
+    public void writeTo(Path file) throws IOException {
+        Data data = new Data();
+        data.version = FORMAT_VERSION;
+        data.historyDigest = historyDigest;
+        data.excludedPayees = new ArrayList<>(excludedPayees);
+        data.rollups = new TreeMap<>();
+        rollups.forEach((key, months) -> {
+            Map<String, long[]> values = new TreeMap<>();
+            months.forEach((month, value) -> values.put(month.toString(), value));
+            data.rollups.put(key, values);
+        });
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                GSON.toJson(data, writer);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the store in file, or null if there is no file
+     */
+    public static RollupStore readFrom(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Data data;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            data = GSON.fromJson(reader, Data.class);
+        } catch (JsonParseException e) {
+            throw new IOException(String.format("File '%s' is not a rollup store", file), e);
+        }
+        if (data == null || data.version != FORMAT_VERSION || data.excludedPayees == null || data.rollups == null) {
+            throw new IOException(String.format("File '%s' is not a rollup store of a supported version", file));
+        }
+
+        RollupStore store = new RollupStore(new TreeSet<>(data.excludedPayees));
+        store.historyDigest = data.historyDigest;
+        data.rollups.forEach((key, values) -> {
+            Map<YearMonth, long[]> months = new HashMap<>();
+            values.forEach((month, value) -> months.put(YearMonth.parse(month), value));
+            store.rollups.put(key, months);
+        });
+        return store;
+    }
+
+    private void rollUp(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters, Set<String> keys) {
+        keys.forEach(key -> rollups.putIfAbsent(key, new HashMap<>()));
+        if (keys.isEmpty() || accountTransactions.isEmpty()) {
+            return;
+        }
+
+        // Key of each classification filter, null if it is not rolled up
+        String[] filterKeys = new String[payeeFilters.size()];
+        for (int i = 0; i < payeeFilters.size(); i++) {
+            String key = keyOf(payeeFilters.get(i));
+            filterKeys[i] = keys.contains(key) ? key : null;
+        }
+
+        // The shared matcher, so headers already matched for the same filters are not matched again
+        Classification classification = new TransactionClassifier(PayeeMatcher.of(payeeFilters)).classify(accountTransactions);
+        for (int row = 0; row < classification.getMatched().size(); row++) {
+            AccountTransaction transaction = classification.getMatched().get(row);
+            YearMonth month = YearMonth.from(transaction.getDate());
+            int[] filters = classification.getMatchingFilters(row);
+            for (int i = 0; i < filters.length; i++) {
+                String key = filterKeys[filters[i]];
+                if (key == null || isRolledUp(key, filters, i, filterKeys)) {
+                    continue;
+                }
+                long[] values = rollups.get(key).computeIfAbsent(month, m -> new long[2]);
+                values[TOTAL] += MonthlyAggregator.toMinorUnits(transaction.getAmount());
+                values[COUNT]++;
+            }
+        }
+    }
+
+    /**
+     * @return true if a filter before the i:th matching filter has the same key, so the transaction has already been rolled up for the key
+     */
+    private static boolean isRolledUp(String key, int[] filters, int i, String[] filterKeys) {
+        for (int j = 0; j < i; j++) {
+            if (key.equals(filterKeys[filters[j]])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<YearMonth, long[]> getRollup(PayeeFilter filter) {
+        Map<YearMonth, long[]> rollup = rollups.get(keyOf(filter));
+        if (rollup == null) {
+            throw new IllegalStateException(String.format("Payee filter '%s' has not been rolled up", filter.getAlias()));
+        }
+        return rollup;
+    }
+
+    /**
+     * Filters with the same payees, ignoring case and order, match the same transactions and share a key.
+     */
+    static String keyOf(PayeeFilter filter) {
+        Set<String> payees = new TreeSet<>();
+        if (filter.getPayees() != null) {
+            for (String payee : filter.getPayees()) {
+                if (payee != null) {
+                    payees.add(payee.toLowerCase());
+                }
+            }
+        }
+        return String.join("\n", payees);
+    }
+
+    private static Set<String> keysOf(List<PayeeFilter> payeeFilters) {
+        Set<String> keys = new LinkedHashSet<>();
+        payeeFilters.forEach(filter -> keys.add(keyOf(filter)));
+        return keys;
+    }
+
+    private static Set<String> excludedPayeesOf(List<PayeeFilter> payeeFilters) {
+        Set<String> excludedPayees = new TreeSet<>();
+        for (PayeeFilter filter : payeeFilters) {
+            if (filter.getExcludedPayees() != null) {
+                filter.getExcludedPayees().stream().filter(Objects::nonNull).forEach(excludedPayees::add);
+            }
+        }
+        return excludedPayees;
+    }
+
+    /**
+     * The persisted form of the store.
+     */
+    private static class Data {
+        private int version;
+        private String historyDigest;
+        private List<String> excludedPayees;
+        private Map<String, Map<String, long[]>> rollups;
+    }
+}
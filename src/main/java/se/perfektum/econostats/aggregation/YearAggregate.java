@@ -0,0 +1,77 @@
+package se.perfektum.econostats.aggregation;
+
+import java.time.Month;
+import java.time.Year;
+import java.util.Collections;
+import java.util.List;
+
+import se.perfektum.econostats.domain.PayeeFilter;
+
+/**
+ * Monthly totals of one year, with one column per filter that matched any transaction that year. Totals are absolute amounts in minor units (öre),
+ * held in a dense month by column matrix. Immutable.
+ */
+public final class YearAggregate {
+    private final Year year;
+    private final List<PayeeFilter> payeeFilters;
+    private final long[][] totals;
+    private final int[][] counts;
+
+    YearAggregate(Year year, List<PayeeFilter> payeeFilters, long[][] totals, int[][] counts) {
+        this.year = year;
+        this.payeeFilters = Collections.unmodifiableList(payeeFilters);
+        this.totals = totals;
+        this.counts = counts;
+    }
+
+    public Year getYear() {
+        return year;
+    }
+
+    /**
+     * @return the filters of the columns, sorted by alias
+     */
+    public List<PayeeFilter> getPayeeFilters() {
+        return payeeFilters;
+    }
+
+    public int getColumnCount() {
+        return payeeFilters.size();
+    }
+
+    /**
+     * @return the total of a column in a month, in minor units
+     */
+    public long getTotal(Month month, int column) {
+        return totals[month.ordinal()][column];
+    }
+
+    /**
+     * @return the total of a column for the whole year, in minor units
+     */
+    public long getTotal(int column) {
+        long total = 0;
+        for (long[] monthTotals : totals) {
+            total += monthTotals[column];
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of transactions in a column in a month. A month without transactions has no total, rather than a total of zero.
+     */
+    public int getCount(Month month, int column) {
+        return counts[month.ordinal()][column];
+    }
+
+    /**
+     * @return the number of transactions in a column for the whole year
+     */
+    public int getCount(int column) {
+        int count = 0;
+        for (int[] monthCounts : counts) {
+            count += monthCounts[column];
+        }
+        return count;
+    }
+}
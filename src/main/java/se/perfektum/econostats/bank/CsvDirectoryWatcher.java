@@ -0,0 +1,155 @@
+package se.perfektum.econostats.bank;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+
+/**
+ * Watches a directory for new or changed bank csv files and imports them automatically. Files are collected until no new files have appeared for the
+ * quiet period, then all of them are parsed and handed to the batch handler as one delta, so several files dropped at once result in a single merge
+ * and upload.
+ */
+public class CsvDirectoryWatcher implements Closeable {
+    final Logger LOGGER = LoggerFactory.getLogger(CsvDirectoryWatcher.class);
+
+    private final Path directory;
+    private final CsvReader csvReader;
+    private final long quietPeriod;
+    private final Consumer<List<AccountTransaction>> batchHandler;
+    private final PathMatcher csvMatcher = FileSystems.getDefault().getPathMatcher("glob:" + CsvReader.DEFAULT_GLOB);
+    private final Set<Path> pendingFiles = new LinkedHashSet<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "csv-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WatchService watchService;
+    private ScheduledFuture<?> scheduledImport;
+
+    /**
+     * @param directory    The directory to watch
+     * @param csvReader    Parses the files
+     * @param quietPeriod  Milliseconds without new files before the collected files are imported
+     * @param batchHandler Receives the transactions of all files imported in one batch
+     */
+    public CsvDirectoryWatcher(Path directory, CsvReader csvReader, long quietPeriod, Consumer<List<AccountTransaction>> batchHandler) {
+        this.directory = directory;
+        this.csvReader = csvReader;
+        this.quietPeriod = quietPeriod;
+        this.batchHandler = batchHandler;
+    }
+
+    /**
+     * Starts watching the directory on a daemon thread.
+     */
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        LOGGER.info(String.format("Watching '%s' for new csv files", directory));
+
+        Thread thread = new Thread(this::watch, "csv-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        LOGGER.warn(String.format("Events were lost while watching '%s', some files may need to be imported manually", directory));
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context());
+                    if (csvMatcher.matches(file.getFileName())) {
+                        fileChanged(file);
+                    }
+                }
+                if (!key.reset()) {
+                    LOGGER.warn(String.format("Directory '%s' is no longer accessible, stopped watching", directory));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug(String.format("Stopped watching '%s'", directory));
+        }
+    }
+
+    private synchronized void fileChanged(Path file) {
+        LOGGER.debug(String.format("Csv file '%s' was added or changed", file));
+        pendingFiles.add(file);
+        if (scheduledImport != null) {
+            scheduledImport.cancel(false);
+        }
+        scheduledImport = scheduler.schedule(this::importPendingFiles, quietPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    private void importPendingFiles() {
+        List<Path> files;
+        synchronized (this) {
+            files = new ArrayList<>(pendingFiles);
+            pendingFiles.clear();
+        }
+
+        List<AccountTransaction> delta = new ArrayList<>();
+        for (Path file : files) {
+            if (!Files.isRegularFile(file)) {
+                continue;
+            }
+            try {
+                delta.addAll(csvReader.getAccountTransactionsFromFile(file.toString()));
+            } catch (Exception e) {
+                LOGGER.error(String.format("Failed to import '%s'", file), e);
+            }
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        delta.sort(Comparator.comparing(AccountTransaction::getDate));
+
+        LOGGER.info(String.format("Importing %d transactions from %d file(s)", delta.size(), files.size()));
+        try {
+            batchHandler.accept(delta);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to merge imported transactions", e);
+        }
+    }
+}
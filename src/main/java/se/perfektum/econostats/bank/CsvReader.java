@@ -2,11 +2,80 @@ package se.perfektum.econostats.bank;
 
 import se.perfektum.econostats.domain.AccountTransaction;
 
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Parses a CSV file.
  */
 public interface CsvReader {
+    String DEFAULT_GLOB = "*.csv";
+
     List<AccountTransaction> getAccountTransactionsFromFile(String filePath) throws Exception;
+
+    /**
+     * Parses a CSV file one row at a time, handing each AccountTransaction to the consumer as soon as it has been parsed. No rows are kept in memory
+     * by the reader itself.
+     */
+    void readAccountTransactions(String filePath, Consumer<AccountTransaction> consumer) throws Exception;
+
+    /**
+     * Parses all files in a directory matching the glob, eg. a year of monthly exports for several accounts. Files are parsed in parallel on a fork-join
+     * pool bounded by the number of available processors, and the result is merged and ordered by date. Transactions on the same date keep the order of
+     * the files (by name) and the order within each file.
+     *
+     * @param directory Directory containing the CSV files
+     * @param glob      Glob pattern selecting the files to parse, eg. "nordea*.csv". Defaults to "*.csv" if null or empty
+     * @return All parsed transactions, ordered by date
+     */
+    default List<AccountTransaction> getAccountTransactionsFromDirectory(String directory, String glob) throws Exception {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(directory), glob == null || glob.isEmpty() ? DEFAULT_GLOB : glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Collections.sort(files);
+
+        List<List<AccountTransaction>> parsedFiles;
+        ForkJoinPool pool = new ForkJoinPool(Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            parsedFiles = pool.submit(() -> files.parallelStream().map(file -> {
+                try {
+                    return getAccountTransactionsFromFile(file.toString());
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }).collect(Collectors.toList())).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } finally {
+            pool.shutdown();
+        }
+
+        List<AccountTransaction> result = new ArrayList<>();
+        parsedFiles.forEach(result::addAll);
+        result.sort(Comparator.comparing(AccountTransaction::getDate));
+        return result;
+    }
 }
@@ -0,0 +1,257 @@
+package se.perfektum.econostats.bank.nordea;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.univocity.parsers.csv.CsvFormat;
+import com.univocity.parsers.csv.CsvParser;
+import com.univocity.parsers.csv.CsvParserSettings;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+
+/**
+ * Parses a single large Nordea csv file on several cores. The file is split into line-aligned byte ranges, and each range is tokenized and mapped to
+ * AccountTransactions on its own thread. The result keeps the order of the file, and a row that fails to parse is reported with its line number in the
+ * file, as if the file had been parsed from start to end.
+ * <p>
+ * Ranges are split on line feeds, so this only works for files without line breaks inside quoted values, which is the case for Nordea exports.
+ */
+class ChunkedNordeaCsvParser {
+    final Logger LOGGER = LoggerFactory.getLogger(ChunkedNordeaCsvParser.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private final int parallelism;
+    private final long minChunkSize;
+
+    ChunkedNordeaCsvParser(int parallelism) {
+        this(parallelism, MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * @param minChunkSize Files are not split into chunks smaller than this many bytes
+     */
+    ChunkedNordeaCsvParser(int parallelism, long minChunkSize) {
+        this.parallelism = parallelism;
+        this.minChunkSize = minChunkSize;
+    }
+
+    List<AccountTransaction> parse(Path csvFile) throws IOException {
+        CsvParserSettings settings = new CsvParserSettings();
+        settings.detectFormatAutomatically();
+        CsvParser parser = new CsvParser(settings);
+        parser.beginParsing(csvFile.toFile(), NordeaCsvReader.CHARSET);
+        String[] firstLine;
+        CsvFormat format;
+        try {
+            firstLine = parser.parseNext();
+            format = parser.getDetectedFormat();
+        } finally {
+            parser.stopParsing();
+        }
+        if (firstLine == null) {
+            return new ArrayList<>();
+        }
+        CsvVersion version = NordeaCsvReader.getVersion(firstLine);
+        if (version == CsvVersion.UNKNOWN) {
+            return new ArrayList<>();
+        }
+        boolean header = NordeaCsvReader.isHeader(firstLine);
+
+        long[] bounds = getChunkBounds(csvFile);
+        LOGGER.debug(String.format("Parsing '%s' in %d chunks", csvFile, bounds.length - 1));
+
+        List<Chunk> chunks;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            chunks = pool.submit(() -> IntStream.range(0, bounds.length - 1)
+                    .parallel()
+                    .mapToObj(i -> parseChunk(csvFile, bounds[i], bounds[i + 1], format, version, i == 0 && header))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            pool.shutdown();
+        }
+
+        List<AccountTransaction> result = new ArrayList<>();
+        long linesBefore = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.failedLine != null) {
+                // Maps the row again, now with its absolute line number, so the exception tells where in the file the problem is
+                NordeaCsvReader.toAccountTransaction(chunk.failedLine, version, linesBefore + chunk.failedLineNumber);
+                throw chunk.failure;
+            }
+            result.addAll(chunk.accountTransactions);
+            linesBefore += chunk.lineCount;
+        }
+        return result;
+    }
+
+    /**
+     * Splits the file into ranges of roughly equal size, each ending directly after a line feed (or at the end of the file).
+     */
+    long[] getChunkBounds(Path csvFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunkCount = (int) Math.max(1, Math.min(parallelism, size / minChunkSize));
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (int i = 1; i < chunkCount; i++) {
+                long position = Math.max(bounds.get(bounds.size() - 1), size * i / chunkCount);
+                long bound = findNextLineStart(channel, position, buffer);
+                if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+                    bounds.add(bound);
+                }
+            }
+            bounds.add(size);
+            return bounds.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    private static long findNextLineStart(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private static Chunk parseChunk(Path csvFile, long start, long end, CsvFormat format, CsvVersion version, boolean skipHeader) {
+        CsvParserSettings settings = new CsvParserSettings();
+        settings.getFormat().setDelimiter(format.getDelimiter());
+        settings.getFormat().setQuote(format.getQuote());
+        settings.getFormat().setQuoteEscape(format.getQuoteEscape());
+        settings.setLineSeparatorDetectionEnabled(true);
+        CsvParser parser = new CsvParser(settings);
+
+        Chunk chunk = new Chunk();
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            channel.position(start);
+            LineCountingInputStream in = new LineCountingInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE), end - start);
+            parser.beginParsing(in, NordeaCsvReader.CHARSET);
+            try {
+                String[] line = parser.parseNext();
+                if (skipHeader && line != null) {
+                    line = parser.parseNext();
+                }
+                while (line != null) {
+                    try {
+                        chunk.accountTransactions.add(NordeaCsvReader.toAccountTransaction(line, version, parser.getContext().currentLine()));
+                    } catch (RuntimeException e) {
+                        chunk.failedLine = line;
+                        chunk.failedLineNumber = parser.getContext().currentLine();
+                        chunk.failure = e;
+                        return chunk;
+                    }
+                    line = parser.parseNext();
+                }
+            } finally {
+                parser.stopParsing();
+            }
+            chunk.lineCount = in.lineCount;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to read '%s'", csvFile), e);
+        }
+        return chunk;
+    }
+
+    private static class Chunk {
+        private final List<AccountTransaction> accountTransactions = new ArrayList<>();
+        private long lineCount;
+        private String[] failedLine;
+        private long failedLineNumber;
+        private RuntimeException failure;
+    }
+
+    /**
+     * Reads at most limit bytes and counts the line feeds read.
+     */
+    private static class LineCountingInputStream extends FilterInputStream {
+        private long remaining;
+        private long lineCount;
+
+        LineCountingInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+                if (b == '\n') {
+                    lineCount++;
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+                for (int i = off; i < off + read; i++) {
+                    if (b[i] == '\n') {
+                        lineCount++;
+                    }
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("skip is not supported");
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package se.perfektum.econostats.bank.nordea;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import se.perfektum.econostats.bank.CsvReader;
+import se.perfektum.econostats.configuration.NordeaProperties;
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.StringPool;
+
+/**
+ * Parses a Nordea csv file by mapping it into memory and scanning the fields directly from the mapped buffer. Only the fixed V1 and V2 layouts are
+ * supported. Dates and amounts are parsed from the raw bytes, so the only Strings created are the text columns that end up in the AccountTransaction.
+ * <p>
+ * Produces the same AccountTransactions as {@link NordeaCsvReader}, which should be used for files that are not Nordea exports. Selected instead of it
+ * as the csvReader of the EconoStatsController in ApplicationContext.xml.
+ */
+@Component
+public class MappedNordeaCsvReader implements CsvReader {
+
+    final Logger LOGGER = LoggerFactory.getLogger(MappedNordeaCsvReader.class);
+
+    private static final int MAX_COLUMNS = 16;
+    private static final int MAX_AMOUNT_LENGTH = 64;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final StringPool POOL = StringPool.getInstance();
+
+    @Autowired
+    private NordeaProperties nordeaProperties;
+
+    @Override
+    public List<AccountTransaction> getAccountTransactionsFromFile(String csvFile) throws IOException {
+        List<AccountTransaction> ats = new ArrayList<>();
+        readAccountTransactions(csvFile, ats::add);
+        return ats;
+    }
+
+    @Override
+    public void readAccountTransactions(String csvFile, Consumer<AccountTransaction> consumer) throws IOException {
+        csvFile = csvFile == null || csvFile.isEmpty() ? nordeaProperties.getCsvFilePath() : csvFile;
+        LOGGER.debug(String.format("Parsing memory mapped file '%s'", csvFile));
+
+        try (FileChannel channel = FileChannel.open(Paths.get(csvFile), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("File '%s' is too large to be memory mapped", csvFile));
+            }
+            Scanner scanner = new Scanner(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), NordeaCsvReader.CHARSET);
+            if (!scanner.nextLine()) {
+                LOGGER.debug(String.format("File '%s' is empty", csvFile));
+                return;
+            }
+
+            String[] firstLine = scanner.getLine();
+            CsvVersion version = NordeaCsvReader.getVersion(firstLine);
+            if (version == CsvVersion.UNKNOWN) {
+                return;
+            }
+            if (NordeaCsvReader.isHeader(firstLine) && !scanner.nextLine()) {
+                return;
+            }
+            do {
+                consumer.accept(version == CsvVersion.V1 ? toV1AccountTransaction(scanner) : toV2AccountTransaction(scanner));
+            } while (scanner.nextLine());
+        }
+    }
+
+    private static AccountTransaction toV1AccountTransaction(Scanner scanner) {
+        AccountTransaction at = new AccountTransaction();
+        at.setDate(scanner.getDate(0));
+        at.setHeader(POOL.intern(scanner.getString(1)));
+        at.setCategory(POOL.intern(scanner.getString(2)));
+        at.setAmount(scanner.getAmount(3));
+        at.setBalance(scanner.getAmount(4));
+        at.setStampInserted(LocalDateTime.now());
+        at.setStampChanged(LocalDateTime.now());
+        return at;
+    }
+
+    private static AccountTransaction toV2AccountTransaction(Scanner scanner) {
+        AccountTransaction at = new AccountTransaction();
+        at.setDate(scanner.getDate(0));
+        at.setAmount(scanner.getAmount(1));
+        at.setSender(POOL.intern(scanner.getString(2)));
+        at.setReceiver(POOL.intern(scanner.getString(3)));
+        at.setName(POOL.intern(scanner.getString(4)));
+        at.setHeader(POOL.intern(scanner.getString(5)));
+        at.setBalance(scanner.getAmount(6));
+        at.setCurrency(POOL.intern(scanner.getString(7)));
+        at.setStampInserted(LocalDateTime.now());
+        at.setStampChanged(LocalDateTime.now());
+        return at;
+    }
+
+    /**
+     * Splits the mapped buffer into lines and fields. Only the positions of the fields are recorded; values are decoded on demand. Follows the defaults
+     * of the univocity parser used by NordeaCsvReader: unquoted values are trimmed, empty values are null and blank lines are skipped.
+     */
+    private static class Scanner {
+        private final MappedByteBuffer buffer;
+        private final Charset charset;
+        private final int limit;
+        private final int[] starts = new int[MAX_COLUMNS];
+        private final int[] ends = new int[MAX_COLUMNS];
+        private final boolean[] escaped = new boolean[MAX_COLUMNS];
+        private final byte[] scratch = new byte[MAX_AMOUNT_LENGTH];
+        private byte[] stringScratch = new byte[256];
+        private byte delimiter;
+        private int position;
+        private int columns;
+        private long lineNumber;
+
+        Scanner(MappedByteBuffer buffer, Charset charset) {
+            this.buffer = buffer;
+            this.charset = charset;
+            this.limit = buffer.limit();
+            // Skip UTF-8 byte order mark
+            if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+                position = 3;
+            }
+            delimiter = detectDelimiter();
+        }
+
+        /**
+         * Nordea V1 files are comma separated and V2 files semicolon separated. Picks whichever occurs most often outside quotes on the first line.
+         */
+        private byte detectDelimiter() {
+            int commas = 0;
+            int semicolons = 0;
+            boolean quoted = false;
+            for (int i = position; i < limit; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && b == '\n') {
+                    break;
+                } else if (!quoted && b == ',') {
+                    commas++;
+                } else if (!quoted && b == ';') {
+                    semicolons++;
+                }
+            }
+            return semicolons > commas ? (byte) ';' : (byte) ',';
+        }
+
+        /**
+         * Moves to the next non-blank line.
+         *
+         * @return false if there are no more lines
+         */
+        boolean nextLine() {
+            while (position < limit) {
+                lineNumber++;
+                columns = 0;
+                boolean blank = true;
+                while (true) {
+                    int i = skipWhitespace(position);
+                    int start;
+                    int end;
+                    boolean hasEscapes = false;
+                    if (i < limit && buffer.get(i) == '"') {
+                        blank = false;
+                        start = ++i;
+                        while (i < limit) {
+                            byte b = buffer.get(i);
+                            if (b == '\n') {
+                                lineNumber++;
+                            } else if (b == '"') {
+                                if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                                    hasEscapes = true;
+                                    i++;
+                                } else {
+                                    break;
+                                }
+                            }
+                            i++;
+                        }
+                        end = i;
+                        // Ignore anything between the closing quote and the next delimiter
+                        while (i < limit && buffer.get(i) != delimiter && buffer.get(i) != '\n') {
+                            i++;
+                        }
+                        if (end == start) {
+                            // Empty quoted values are null, like unquoted ones
+                            end = -1;
+                        }
+                    } else {
+                        start = i;
+                        while (i < limit && buffer.get(i) != delimiter && buffer.get(i) != '\n') {
+                            i++;
+                        }
+                        end = i;
+                        while (end > start && isWhitespace(buffer.get(end - 1))) {
+                            end--;
+                        }
+                        if (end > start) {
+                            blank = false;
+                        } else {
+                            end = -1;
+                        }
+                    }
+                    if (columns < MAX_COLUMNS) {
+                        starts[columns] = start;
+                        ends[columns] = end;
+                        escaped[columns] = hasEscapes;
+                    }
+                    columns++;
+
+                    if (i < limit && buffer.get(i) == delimiter) {
+                        blank = false;
+                        position = i + 1;
+                    } else {
+                        position = i < limit ? i + 1 : limit;
+                        break;
+                    }
+                }
+                if (!blank) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int skipWhitespace(int i) {
+            while (i < limit && buffer.get(i) != '\n' && buffer.get(i) != delimiter && isWhitespace(buffer.get(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private static boolean isWhitespace(byte b) {
+            // Same as univocity, which trims all characters up to and including space. Also covers the '\r' of "\r\n" line endings.
+            return b >= 0 && b <= ' ';
+        }
+
+        private boolean isNull(int column) {
+            return column >= columns || column >= MAX_COLUMNS || ends[column] < 0;
+        }
+
+        String[] getLine() {
+            String[] line = new String[Math.min(columns, MAX_COLUMNS)];
+            for (int i = 0; i < line.length; i++) {
+                line[i] = isNull(i) ? null : decode(i);
+            }
+            return line;
+        }
+
+        String getString(int column) {
+            return isNull(column) ? "" : decode(column);
+        }
+
+        LocalDate getDate(int column) {
+            if (!isNull(column) && ends[column] - starts[column] == 10) {
+                int start = starts[column];
+                int year = digits(start, 4);
+                int month = digits(start + 5, 2);
+                int day = digits(start + 8, 2);
+                if (year >= 0 && month >= 0 && day >= 0 && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-') {
+                    return LocalDate.of(year, month, day);
+                }
+            }
+            // Not a plain yyyy-MM-dd date, let the formatter produce the error
+            return LocalDate.parse(isNull(column) ? null : decode(column), FORMATTER);
+        }
+
+        /**
+         * Copies the bytes of the amount into a scratch array, which {@link NordeaAmountParser#parse(byte[], int, int)} parses in place. Nothing is
+         * decoded unless the amount is invalid.
+         */
+        BigDecimal getAmount(int column) {
+            if (isNull(column)) {
+                return null;
+            }
+            int length = ends[column] - starts[column];
+            try {
+                if (length > scratch.length) {
+                    throw new NumberFormatException(String.format("Not a valid amount: '%s'", decode(column)));
+                }
+                for (int i = 0; i < length; i++) {
+                    scratch[i] = buffer.get(starts[column] + i);
+                }
+                return NordeaAmountParser.parse(scratch, 0, length);
+            } catch (NumberFormatException nfe) {
+                throw new NumberFormatException(String.format("Failed to parse the following on line %d: '%s'\n %s", lineNumber, decode(column), nfe));
+            }
+        }
+
+        private int digits(int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                byte b = buffer.get(i);
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                value = value * 10 + (b - '0');
+            }
+            return value;
+        }
+
+        private String decode(int column) {
+            int length = ends[column] - starts[column];
+            if (stringScratch.length < length) {
+                stringScratch = new byte[Math.max(length, stringScratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                stringScratch[i] = buffer.get(starts[column] + i);
+            }
+            String value = new String(stringScratch, 0, length, charset);
+            return escaped[column] ? value.replace("\"\"", "\"") : value;
+        }
+    }
+}
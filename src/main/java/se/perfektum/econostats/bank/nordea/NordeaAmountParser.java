@@ -0,0 +1,289 @@
+package se.perfektum.econostats.bank.nordea;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses monetary values the way Nordea presents them in its csv files, eg. "-1.234,56", "1234.56", "−66,00" or "66".
+ * <p>
+ * The value is scanned once, without regular expressions or intermediate Strings. The last '.' or ',' is the decimal separator, unless it is a '.'
+ * followed by exactly three digits ("1.000"), in which case it is a thousands separator. Any other '.', ',' or space before the decimal separator is
+ * a thousands separator. Both a hyphen-minus and the arithmetic minus sign (U+2212) are accepted as the sign.
+ * <p>
+ * UTF-8 bytes are parsed by the same rules, straight from the bytes. Digits and separators are ASCII, and the only other characters accepted, the minus
+ * sign and the no-break space, are recognized by their encoded bytes.
+ */
+public final class NordeaAmountParser {
+
+    private static final char MINUS_SIGN = '\u2212';
+    private static final char NO_BREAK_SPACE = '\u00A0';
+    private static final int MAX_DIGITS = 18;
+    private static final int MINOR_UNIT_SCALE = 2;
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100 };
+
+    // UTF-8 encodings of MINUS_SIGN and NO_BREAK_SPACE
+    private static final byte[] MINUS_SIGN_UTF_8 = { (byte) 0xE2, (byte) 0x88, (byte) 0x92 };
+    private static final byte[] NO_BREAK_SPACE_UTF_8 = { (byte) 0xC2, (byte) 0xA0 };
+
+    private NordeaAmountParser() {
+    }
+
+    /**
+     * Parses a monetary value to a BigDecimal. The scale of the result is the number of digits after the decimal separator.
+     *
+     * @param value The value to parse
+     * @return The parsed value, or null if value is null or blank
+     * @throws NumberFormatException if the value is not a valid amount
+     */
+    public static BigDecimal parse(CharSequence value) {
+        if (value == null) {
+            return null;
+        }
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        if (start == end) {
+            return null;
+        }
+        int decimalSeparator = findDecimalSeparator(value, start, end);
+        long unscaled = parseUnscaled(value, start, end, decimalSeparator);
+        return BigDecimal.valueOf(unscaled, decimalSeparator < 0 ? 0 : end - decimalSeparator - 1);
+    }
+
+    /**
+     * Parses a monetary value to a number of minor units (öre), eg. "-1.234,5" becomes -123450.
+     *
+     * @param value The value to parse
+     * @return The value in minor units
+     * @throws NumberFormatException if the value is blank, not a valid amount or has more than two decimals
+     */
+    public static long parseMinorUnits(CharSequence value) {
+        int start = value == null ? 0 : trimStart(value);
+        int end = value == null ? 0 : trimEnd(value, start);
+        if (start == end) {
+            throw new NumberFormatException("Amount is empty");
+        }
+        int decimalSeparator = findDecimalSeparator(value, start, end);
+        long unscaled = parseUnscaled(value, start, end, decimalSeparator);
+        return toMinorUnits(unscaled, decimalSeparator < 0 ? 0 : end - decimalSeparator - 1, value);
+    }
+
+    /**
+     * Parses a UTF-8 encoded monetary value from a byte array, by the same rules as {@link #parse(CharSequence)}. The bytes are scanned in place, so
+     * nothing but the result is allocated unless the value is invalid.
+     *
+     * @param bytes The bytes to read from
+     * @param start Index of the first byte of the value
+     * @param end   Index after the last byte of the value
+     * @return The parsed value, or null if the value is blank
+     * @throws NumberFormatException if the value is not a valid amount
+     */
+    public static BigDecimal parse(byte[] bytes, int start, int end) {
+        int valueStart = trimStart(bytes, start, end);
+        int valueEnd = trimEnd(bytes, valueStart, end);
+        if (valueStart == valueEnd) {
+            return null;
+        }
+        int decimalSeparator = findDecimalSeparator(bytes, valueStart, valueEnd);
+        long unscaled;
+        try {
+            unscaled = parseUnscaled(bytes, valueStart, valueEnd, decimalSeparator);
+        } catch (NumberFormatException e) {
+            // Only decoded to tell what was invalid
+            throw invalid(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+        }
+        return BigDecimal.valueOf(unscaled, decimalSeparator < 0 ? 0 : valueEnd - decimalSeparator - 1);
+    }
+
+    private static long toMinorUnits(long unscaled, int scale, CharSequence value) {
+        if (scale > MINOR_UNIT_SCALE) {
+            throw new NumberFormatException(String.format("Amount has more than %d decimals: '%s'", MINOR_UNIT_SCALE, value));
+        }
+        try {
+            return Math.multiplyExact(unscaled, POWERS_OF_TEN[MINOR_UNIT_SCALE - scale]);
+        } catch (ArithmeticException e) {
+            throw invalid(value);
+        }
+    }
+
+    private static int trimStart(CharSequence value) {
+        int start = 0;
+        while (start < value.length() && isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence value, int start) {
+        int end = value.length();
+        while (end > start && isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int findDecimalSeparator(CharSequence value, int start, int end) {
+        int i = end - 1;
+        while (i >= start && isDigit(value.charAt(i))) {
+            i--;
+        }
+        if (i < start) {
+            return -1;
+        }
+        char c = value.charAt(i);
+        if (c == ',' || (c == '.' && end - 1 - i != 3)) {
+            return i;
+        }
+        return -1;
+    }
+
+    private static long parseUnscaled(CharSequence value, int start, int end, int decimalSeparator) {
+        int i = start;
+        boolean negative = false;
+        char first = value.charAt(i);
+        if (first == '-' || first == MINUS_SIGN) {
+            negative = true;
+            i++;
+        } else if (first == '+') {
+            i++;
+        }
+
+        long result = 0;
+        int digits = 0;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (isDigit(c)) {
+                if (++digits > MAX_DIGITS) {
+                    throw invalid(value);
+                }
+                result = result * 10 + (c - '0');
+            } else if (i == decimalSeparator) {
+                continue;
+            } else if ((decimalSeparator < 0 || i < decimalSeparator) && digits > 0 && isGroupSeparator(c)) {
+                continue;
+            } else {
+                throw invalid(value);
+            }
+        }
+        if (digits == 0) {
+            throw invalid(value);
+        }
+        return negative ? -result : result;
+    }
+
+    private static int trimStart(byte[] bytes, int start, int end) {
+        while (start < end) {
+            if (bytes[start] == ' ' || bytes[start] == '\t') {
+                start++;
+            } else if (isAt(bytes, start, end, NO_BREAK_SPACE_UTF_8)) {
+                start += NO_BREAK_SPACE_UTF_8.length;
+            } else {
+                break;
+            }
+        }
+        return start;
+    }
+
+    private static int trimEnd(byte[] bytes, int start, int end) {
+        while (end > start) {
+            if (bytes[end - 1] == ' ' || bytes[end - 1] == '\t') {
+                end--;
+            } else if (end - start >= NO_BREAK_SPACE_UTF_8.length && isAt(bytes, end - NO_BREAK_SPACE_UTF_8.length, end, NO_BREAK_SPACE_UTF_8)) {
+                end -= NO_BREAK_SPACE_UTF_8.length;
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static int findDecimalSeparator(byte[] bytes, int start, int end) {
+        int i = end - 1;
+        while (i >= start && isDigit(bytes[i])) {
+            i--;
+        }
+        if (i < start) {
+            return -1;
+        }
+        byte b = bytes[i];
+        if (b == ',' || (b == '.' && end - 1 - i != 3)) {
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @throws NumberFormatException without a message, as the caller decodes the value for the message
+     */
+    private static long parseUnscaled(byte[] bytes, int start, int end, int decimalSeparator) {
+        int i = start;
+        boolean negative = false;
+        if (bytes[i] == '-') {
+            negative = true;
+            i++;
+        } else if (isAt(bytes, i, end, MINUS_SIGN_UTF_8)) {
+            negative = true;
+            i += MINUS_SIGN_UTF_8.length;
+        } else if (bytes[i] == '+') {
+            i++;
+        }
+
+        long result = 0;
+        int digits = 0;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (isDigit(b)) {
+                if (++digits > MAX_DIGITS) {
+                    throw new NumberFormatException();
+                }
+                result = result * 10 + (b - '0');
+            } else if (i == decimalSeparator) {
+                continue;
+            } else if ((decimalSeparator < 0 || i < decimalSeparator) && digits > 0 && (b == '.' || b == ',' || b == ' ')) {
+                continue;
+            } else if ((decimalSeparator < 0 || i < decimalSeparator) && digits > 0 && isAt(bytes, i, end, NO_BREAK_SPACE_UTF_8)) {
+                i += NO_BREAK_SPACE_UTF_8.length - 1;
+            } else {
+                throw new NumberFormatException();
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException();
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * @return true if the bytes from index start with the given encoded character
+     */
+    private static boolean isAt(byte[] bytes, int index, int end, byte[] encoded) {
+        if (end - index < encoded.length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (bytes[index + i] != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isGroupSeparator(char c) {
+        return c == '.' || c == ',' || c == ' ' || c == NO_BREAK_SPACE;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == NO_BREAK_SPACE;
+    }
+
+    private static NumberFormatException invalid(CharSequence value) {
+        return new NumberFormatException(String.format("Not a valid amount: '%s'", value));
+    }
+}
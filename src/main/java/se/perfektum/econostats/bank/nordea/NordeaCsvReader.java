@@ -1,14 +1,18 @@
 package se.perfektum.econostats.bank.nordea;
 
 import java.io.File;
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +25,7 @@ import com.univocity.parsers.csv.CsvParserSettings;
 import se.perfektum.econostats.bank.CsvReader;
 import se.perfektum.econostats.configuration.NordeaProperties;
 import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.StringPool;
 
 /**
  * Parses a CSV file.
@@ -28,136 +33,208 @@ import se.perfektum.econostats.domain.AccountTransaction;
 @Component
 public class NordeaCsvReader implements CsvReader {
 
-    final Logger LOGGER = LoggerFactory.getLogger(NordeaCsvReader.class);
+    final static Logger LOGGER = LoggerFactory.getLogger(NordeaCsvReader.class);
 
     private final static String FIRST_COLUMN_NORDEA_VERSION_1 = "Datum";
     private final static String FIRST_COLUMN_NORDEA_VERSION_2 = "Bokföringsdag";
+    private final static DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    // Nordea exports are UTF-8, so they are not decoded with the platform charset. A byte order mark is skipped
+    public final static Charset CHARSET = StandardCharsets.UTF_8;
+    // Part of the keys of ParsedCsvCache. Must be increased whenever a csv file is parsed to different AccountTransactions than before, so no stale
+    // cached transactions are used
+    final static int PARSER_VERSION = 1;
+    private final static StringPool POOL = StringPool.getInstance();
 
     @Autowired
     private NordeaProperties nordeaProperties;
 
     /**
-     * Reads a csv file from disk and parses it to AccountTransactions. If no path is provided, the configuration file path will be used.
+     * Reads a csv file from disk and parses it to AccountTransactions. If no path is provided, the configuration file path will be used. If a cache path is
+     * configured, files that have been parsed before are read from the cache instead.
      *
      * @param csvFile Path to csv file to parse
      * @return List of lines without headers
      * @throws NumberFormatException
+     * @throws IOException if the file could not be read
      */
-    public List<AccountTransaction> getAccountTransactionsFromFile(String csvFile) throws NumberFormatException {
-        csvFile = csvFile == null || csvFile.isEmpty() ? nordeaProperties.getCsvFilePath() : csvFile;
-        LOGGER.debug(String.format("Parsing file '%s'", csvFile));
-        return parseCsv(csvFile);
+    public List<AccountTransaction> getAccountTransactionsFromFile(String csvFile) throws NumberFormatException, IOException {
+        csvFile = getCsvFilePath(csvFile);
+        String cachePath = nordeaProperties.getCachePath();
+        if (cachePath == null || cachePath.isEmpty()) {
+            return parseCsv(csvFile);
+        }
+
+        CsvVersion version = detectVersion(csvFile);
+        if (version == CsvVersion.UNKNOWN) {
+            return parseCsv(csvFile);
+        }
+        ParsedCsvCache cache = new ParsedCsvCache(Paths.get(cachePath));
+        String key = cache.getKey(Paths.get(csvFile), version);
+        List<AccountTransaction> ats = cache.get(key);
+        if (ats != null) {
+            LOGGER.debug(String.format("File '%s' has not changed since it was last parsed, using %d cached transactions", csvFile, ats.size()));
+            return ats;
+        }
+        ats = parseCsv(csvFile);
+        cache.put(key, ats);
+        return ats;
     }
 
     /**
-     * Reads each line of provided csv file and strips the header if existing.
+     * Reads a csv file from disk and hands each parsed AccountTransaction to the consumer, one row at a time. If no path is provided, the configuration
+     * file path will be used.
+     *
+     * @param csvFile  Path to csv file to parse
+     * @param consumer Receives every AccountTransaction in file order, headers excluded
+     * @throws NumberFormatException
      */
-    private List<AccountTransaction> parseCsv(String csvFile) {
-        CsvParserSettings settings = new CsvParserSettings();
-        settings.detectFormatAutomatically();
+    public void readAccountTransactions(String csvFile, Consumer<AccountTransaction> consumer) throws NumberFormatException {
+        parseCsv(getCsvFilePath(csvFile), consumer);
+    }
 
-        CsvParser parser = new CsvParser(settings);
+    private String getCsvFilePath(String csvFile) {
+        return csvFile == null || csvFile.isEmpty() ? nordeaProperties.getCsvFilePath() : csvFile;
+    }
 
-        List<String[]> allLines = parser.parseAll(new File(csvFile));
+    /**
+     * Parses a csv file to a list. Files larger than the configured parallel parsing threshold are split into chunks that are parsed on all available
+     * cores.
+     */
+    private List<AccountTransaction> parseCsv(String csvFile) throws IOException {
+        long threshold = nordeaProperties.getParallelParsingThreshold();
+        if (threshold > 0 && Files.size(Paths.get(csvFile)) >= threshold) {
+            LOGGER.debug(String.format("Parsing file '%s' in parallel", csvFile));
+            return new ChunkedNordeaCsvParser(Runtime.getRuntime().availableProcessors()).parse(Paths.get(csvFile));
+        }
+        List<AccountTransaction> ats = new ArrayList<>();
+        parseCsv(csvFile, ats::add);
+        return ats;
+    }
 
-        CsvVersion version = prepareLinesAndGetVersion(allLines);
+    /**
+     * Determines the version of a csv file by parsing its first line only.
+     */
+    private CsvVersion detectVersion(String csvFile) {
+        CsvParser parser = createParser();
+        parser.beginParsing(new File(csvFile), CHARSET);
+        try {
+            String[] line = parser.parseNext();
+            return line == null ? CsvVersion.UNKNOWN : getVersion(line);
+        } finally {
+            parser.stopParsing();
+        }
+    }
 
-        List<AccountTransaction> ats = new ArrayList<>();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static CsvParser createParser() {
+        CsvParserSettings settings = new CsvParserSettings();
+        settings.detectFormatAutomatically();
+        return new CsvParser(settings);
+    }
 
-        if (version == CsvVersion.V1) {
-            for (String[] line : allLines) {
-
-                AccountTransaction at = new AccountTransaction();
-
-                at.setDate(LocalDate.parse(line[0], formatter));
-                at.setHeader(Objects.toString(line[1], ""));
-                at.setCategory(Objects.toString(line[2], ""));
-                String amount = line[3];
-                String balance = null;
-                // Balance may not always exist
-                if (line.length > 4 && line[4] != null) {
-                    balance = line[4];
-                }
-                if (amount != null && !amount.equals("")) {
-                    try {
-                        // Hyphens
-                        // For some reason Nordea sometimes throws in (or lets through)
-                        // an arithmetic operator minus sign instead of a regular hyphen-minus.
-                        // Separators
-                        // For some reason Nordea uses different notions of presenting the amount
-                        // Sometimes there might be a comma("66,00"), sometimes punctuation ("66.00"),
-                        // sometimes nothing ("66")
-                        at.setAmount(new BigDecimal(amount.trim().replaceAll("\\.", "").replaceAll(",", ".").replaceAll("\u2212", "\u002D")));
-                    } catch (NumberFormatException nfe) {
-                        throw new NumberFormatException(String.format("Failed to parse the following: '%s'\n %s", amount, nfe));
-                    }
-                }
-                if (balance != null && !balance.equals("")) {
-                    balance = balance.trim();
-                    at.setBalance(new BigDecimal(balance.trim().replaceAll("\\.", "").replaceAll(",", ".")));
-                }
-                at.setStampInserted(LocalDateTime.now());
-                at.setStampChanged(LocalDateTime.now());
-                ats.add(at);
+    /**
+     * Parses each line of provided csv file and strips the header if existing. Lines are mapped as they are read, so memory usage does not depend on
+     * the size of the file.
+     */
+    private void parseCsv(String csvFile, Consumer<AccountTransaction> consumer) {
+        LOGGER.debug(String.format("Parsing file '%s'", csvFile));
+        CsvParser parser = createParser();
+        parser.beginParsing(new File(csvFile), CHARSET);
+        try {
+            String[] line = parser.parseNext();
+            if (line == null) {
+                LOGGER.debug(String.format("File '%s' is empty", csvFile));
+                return;
+            }
+
+            CsvVersion version = getVersion(line);
+            if (version == CsvVersion.UNKNOWN) {
+                // File error! Exit!
+                // TODO: Throw a custom exception here, that bubbles up to EconostatsController
+                // and shows a message to the user of the exact problem!
+                return;
             }
+            if (isHeader(line)) {
+                LOGGER.debug(String.format("Headers found. Removing headers from input."));
+                line = parser.parseNext();
+            }
+
+            while (line != null) {
+                consumer.accept(toAccountTransaction(line, version, parser.getContext().currentLine()));
+                line = parser.parseNext();
+            }
+        } finally {
+            parser.stopParsing();
         }
+    }
 
-        else if (version == CsvVersion.V2) {
-            for (String[] line : allLines) {
-
-                AccountTransaction at = new AccountTransaction();
-                at.setDate(LocalDate.parse(line[0], formatter));
-                String amount = line[1];
-                at.setSender(Objects.toString(line[2], ""));
-                at.setReceiver(Objects.toString(line[3], ""));
-                at.setName(Objects.toString(line[4], ""));
-                at.setHeader(Objects.toString(line[5], ""));
-                String balance = line[6];
-                at.setCurrency(Objects.toString(line[7], ""));
-                at.setStampInserted(LocalDateTime.now());
-                at.setStampChanged(LocalDateTime.now());
-
-                if (amount != null && !amount.equals("")) {
-                    try {
-                        at.setAmount(new BigDecimal(amount.replaceAll(",", ".")));
-                    } catch (NumberFormatException nfe) {
-                        throw new NumberFormatException(String.format("Failed to parse the following: '%s'\\n %s", amount, nfe));
-                    }
-                }
-                if (balance != null && !balance.equals("")) {
-                    try {
-                        at.setBalance(new BigDecimal(balance.replaceAll(",", ".")));
-                    } catch (NumberFormatException nfe) {
-                        throw new NumberFormatException(String.format("Failed to parse the following: '%s'\\n %s", amount, nfe));
-                    }
-                }
-                ats.add(at);
+    /**
+     * Maps one parsed csv line to an AccountTransaction.
+     *
+     * @param line       The columns of the line
+     * @param version    The version of the csv file, as given by {@link #getVersion(String[])}
+     * @param lineNumber The line number in the file, only used for error reporting
+     */
+    static AccountTransaction toAccountTransaction(String[] line, CsvVersion version, long lineNumber) {
+        AccountTransaction at = new AccountTransaction();
+        String amount;
+        String balance = null;
+
+        if (version == CsvVersion.V1) {
+            at.setDate(LocalDate.parse(line[0], FORMATTER));
+            at.setHeader(POOL.intern(Objects.toString(line[1], "")));
+            at.setCategory(POOL.intern(Objects.toString(line[2], "")));
+            amount = line[3];
+            // Balance may not always exist
+            if (line.length > 4 && line[4] != null) {
+                balance = line[4];
             }
+            // Hyphens
+            // For some reason Nordea sometimes throws in (or lets through)
+            // an arithmetic operator minus sign instead of a regular hyphen-minus.
+            // Separators
+            // For some reason Nordea uses different notions of presenting the amount
+            // Sometimes there might be a comma("66,00"), sometimes punctuation ("66.00"),
+            // sometimes nothing ("66")
+            // NordeaAmountParser handles all of these.
         } else {
-            // File error! Exit!
-            // TODO: Throw a custom exception here, that bubbles up to EconostatsController
-            // and shows a message to the user of the exact problem!
-            return Collections.emptyList();
+            at.setDate(LocalDate.parse(line[0], FORMATTER));
+            amount = line[1];
+            at.setSender(POOL.intern(Objects.toString(line[2], "")));
+            at.setReceiver(POOL.intern(Objects.toString(line[3], "")));
+            at.setName(POOL.intern(Objects.toString(line[4], "")));
+            at.setHeader(POOL.intern(Objects.toString(line[5], "")));
+            balance = line[6];
+            at.setCurrency(POOL.intern(Objects.toString(line[7], "")));
         }
-        return ats;
+        try {
+            at.setAmount(NordeaAmountParser.parse(amount));
+        } catch (NumberFormatException nfe) {
+            throw new NumberFormatException(String.format("Failed to parse the following on line %d: '%s'\n %s", lineNumber, amount, nfe));
+        }
+        try {
+            at.setBalance(NordeaAmountParser.parse(balance));
+        } catch (NumberFormatException nfe) {
+            throw new NumberFormatException(String.format("Failed to parse the following on line %d: '%s'\n %s", lineNumber, balance, nfe));
+        }
+        at.setStampInserted(LocalDateTime.now());
+        at.setStampChanged(LocalDateTime.now());
+        return at;
     }
 
-    private CsvVersion prepareLinesAndGetVersion(List<String[]> allLines) {
-        LOGGER.debug(String.format("Preparing lines and determining version of csv file"));
+    /**
+     * Determines the version of a csv file from its first line.
+     */
+    static CsvVersion getVersion(String[] firstLine) {
+        LOGGER.debug(String.format("Determining version of csv file"));
 
-        String firstLineFirstColumn = allLines.get(0)[0];
-        int firstLineLength = allLines.get(0).length;
+        String firstLineFirstColumn = firstLine[0];
+        int firstLineLength = firstLine.length;
 
         CsvVersion version = CsvVersion.UNKNOWN;
 
-        if (firstLineFirstColumn.equalsIgnoreCase(FIRST_COLUMN_NORDEA_VERSION_1)) {
-            LOGGER.debug(String.format("Headers found. Removing headers from input."));
-            allLines.remove(0);
+        if (FIRST_COLUMN_NORDEA_VERSION_1.equalsIgnoreCase(firstLineFirstColumn)) {
             version = CsvVersion.V1;
-        } else if (firstLineFirstColumn.equalsIgnoreCase(FIRST_COLUMN_NORDEA_VERSION_2)) {
-            LOGGER.debug(String.format("Headers found. Removing headers from input."));
-            allLines.remove(0);
+        } else if (FIRST_COLUMN_NORDEA_VERSION_2.equalsIgnoreCase(firstLineFirstColumn)) {
             version = CsvVersion.V2;
         } else if (firstLineLength == 5) {
             LOGGER.debug(String.format("Simple V1"));
@@ -169,4 +246,11 @@ public class NordeaCsvReader implements CsvReader {
         LOGGER.debug(String.format("Csv file seems to be version: %s", version));
         return version;
     }
+
+    /**
+     * Checks whether the first line of a csv file is a header line.
+     */
+    static boolean isHeader(String[] firstLine) {
+        return FIRST_COLUMN_NORDEA_VERSION_1.equalsIgnoreCase(firstLine[0]) || FIRST_COLUMN_NORDEA_VERSION_2.equalsIgnoreCase(firstLine[0]);
+    }
 }
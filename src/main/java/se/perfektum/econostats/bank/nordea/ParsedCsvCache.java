@@ -0,0 +1,196 @@
+package se.perfektum.econostats.bank.nordea;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.StringPool;
+
+/**
+ * Local on-disk cache of parsed csv files. Entries are keyed by a SHA-256 hash of the file content together with the detected CsvVersion and
+ * {@link NordeaCsvReader#PARSER_VERSION}, so a file that has not changed is only parsed once, and files are parsed again when the parsing changes.
+ * Transactions are stored in a compact binary form; stamps are not stored but set when an entry is read, just like when a file is parsed.
+ */
+class ParsedCsvCache {
+    final Logger LOGGER = LoggerFactory.getLogger(ParsedCsvCache.class);
+
+    private static final int MAGIC = 0x45435343; // "ECSC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".bin";
+    private static final StringPool POOL = StringPool.getInstance();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    ParsedCsvCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates the cache key of a csv file.
+     *
+     * @param csvFile The csv file
+     * @param version The version of the csv file
+     * @return The key, a hex encoded content hash followed by the version and the parser version
+     */
+    String getKey(Path csvFile, CsvVersion version) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(csvFile)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.append('-').append(version).append("-p").append(NordeaCsvReader.PARSER_VERSION).toString();
+    }
+
+    /**
+     * Gets the cached transactions for a key.
+     *
+     * @return The cached transactions, or null if there is no (readable) entry for the key
+     */
+    List<AccountTransaction> get(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                LOGGER.debug(String.format("Ignoring cache entry '%s' with unknown format", file));
+                return null;
+            }
+            int count = in.readInt();
+            // Every transaction takes more than one byte, so a larger count can only come from a corrupt entry
+            if (count < 0 || count > Files.size(file)) {
+                throw new IOException(String.format("Invalid transaction count %d", count));
+            }
+            List<AccountTransaction> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                AccountTransaction at = new AccountTransaction();
+                at.setDate(LocalDate.ofEpochDay(in.readInt()));
+                at.setAmount(readDecimal(in));
+                at.setBalance(readDecimal(in));
+                at.setHeader(POOL.intern(readString(in)));
+                at.setCategory(POOL.intern(readString(in)));
+                at.setSender(POOL.intern(readString(in)));
+                at.setReceiver(POOL.intern(readString(in)));
+                at.setName(POOL.intern(readString(in)));
+                at.setCurrency(POOL.intern(readString(in)));
+                at.setStampInserted(LocalDateTime.now());
+                at.setStampChanged(LocalDateTime.now());
+                result.add(at);
+            }
+            if (in.read() != -1) {
+                throw new IOException("Unexpected data after the last transaction");
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn(String.format("Could not read cache entry '%s', the file will be parsed instead", file), e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores transactions for a key. Failures are logged, as the cache is only an optimization.
+     */
+    void put(String key, List<AccountTransaction> accountTransactions) {
+        Path file = directory.resolve(key + SUFFIX);
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(accountTransactions.size());
+                for (AccountTransaction at : accountTransactions) {
+                    out.writeInt((int) at.getDate().toEpochDay());
+                    writeDecimal(out, at.getAmount());
+                    writeDecimal(out, at.getBalance());
+                    writeString(out, at.getHeader());
+                    writeString(out, at.getCategory());
+                    writeString(out, at.getSender());
+                    writeString(out, at.getReceiver());
+                    writeString(out, at.getName());
+                    writeString(out, at.getCurrency());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.debug(String.format("Stored %d transactions in cache entry '%s'", accountTransactions.size(), file));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not write cache entry '%s'", file), e);
+        } finally {
+            deleteTempFile(tmp);
+        }
+    }
+
+    private void deleteTempFile(Path tmp) {
+        if (tmp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not delete temporary cache file '%s'", tmp), e);
+        }
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeByte(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedByte()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -19,6 +19,15 @@ public class AppProperties {
     private String payeeFiltersFileName;
     private String csvPath;
     private String csvFilePath;
+    private boolean watchCsvPath;
+    private long watchQuietPeriod;
+    private String fingerprintFilterPath;
+    private long fingerprintFilterSize;
+    private double fingerprintFilterFalsePositiveRate;
+    private String rollupsPath;
+    private String spreadsheetDigestPath;
+    private boolean keepLocalCopies;
+    private boolean updateSpreadsheet;
 
     public String getOutputFilesPath() {
         return outputFilesPath;
@@ -91,4 +100,76 @@ public class AppProperties {
     public void setCsvFilePath(String csvFilePath) {
         this.csvFilePath = csvFilePath;
     }
-}
\ No newline at end of file
+
+    public boolean isWatchCsvPath() {
+        return watchCsvPath;
+    }
+
+    public void setWatchCsvPath(boolean watchCsvPath) {
+        this.watchCsvPath = watchCsvPath;
+    }
+
+    public long getWatchQuietPeriod() {
+        return watchQuietPeriod;
+    }
+
+    public void setWatchQuietPeriod(long watchQuietPeriod) {
+        this.watchQuietPeriod = watchQuietPeriod;
+    }
+
+    public String getFingerprintFilterPath() {
+        return fingerprintFilterPath;
+    }
+
+    public void setFingerprintFilterPath(String fingerprintFilterPath) {
+        this.fingerprintFilterPath = fingerprintFilterPath;
+    }
+
+    public long getFingerprintFilterSize() {
+        return fingerprintFilterSize;
+    }
+
+    public void setFingerprintFilterSize(long fingerprintFilterSize) {
+        this.fingerprintFilterSize = fingerprintFilterSize;
+    }
+
+    public double getFingerprintFilterFalsePositiveRate() {
+        return fingerprintFilterFalsePositiveRate;
+    }
+
+    public void setFingerprintFilterFalsePositiveRate(double fingerprintFilterFalsePositiveRate) {
+        this.fingerprintFilterFalsePositiveRate = fingerprintFilterFalsePositiveRate;
+    }
+
+    public String getRollupsPath() {
+        return rollupsPath;
+    }
+
+    public void setRollupsPath(String rollupsPath) {
+        this.rollupsPath = rollupsPath;
+    }
+
+    public String getSpreadsheetDigestPath() {
+        return spreadsheetDigestPath;
+    }
+
+    public void setSpreadsheetDigestPath(String spreadsheetDigestPath) {
+        this.spreadsheetDigestPath = spreadsheetDigestPath;
+    }
+
+    public boolean isKeepLocalCopies() {
+        return keepLocalCopies;
+    }
+
+    public void setKeepLocalCopies(boolean keepLocalCopies) {
+        this.keepLocalCopies = keepLocalCopies;
+    }
+
+    public boolean isUpdateSpreadsheet() {
+        return updateSpreadsheet;
+    }
+
+    public void setUpdateSpreadsheet(boolean updateSpreadsheet) {
+        this.updateSpreadsheet = updateSpreadsheet;
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.stereotype.Component;
 @ConfigurationProperties("nordea")
 public class NordeaProperties {
     private String csvFilePath;
+    private String cachePath;
+    private long parallelParsingThreshold;
 
     public String getCsvFilePath() {
         return csvFilePath;
@@ -15,4 +17,20 @@ public class NordeaProperties {
     public void setCsvFilePath(String csvFilePath) {
         this.csvFilePath = csvFilePath;
     }
+
+    public String getCachePath() {
+        return cachePath;
+    }
+
+    public void setCachePath(String cachePath) {
+        this.cachePath = cachePath;
+    }
+
+    public long getParallelParsingThreshold() {
+        return parallelParsingThreshold;
+    }
+
+    public void setParallelParsingThreshold(long parallelParsingThreshold) {
+        this.parallelParsingThreshold = parallelParsingThreshold;
+    }
 }
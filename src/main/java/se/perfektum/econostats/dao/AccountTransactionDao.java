@@ -5,6 +5,7 @@ import se.perfektum.econostats.domain.PayeeFilter;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.util.List;
 
@@ -18,6 +19,16 @@ public interface AccountTransactionDao {
 
     void updateFile(String fileId, File filePath, String fileContentMimeType) throws IOException, GeneralSecurityException;
 
+    /**
+     * Same as {@link #createFile(File, List, String, String)}, but uploads the content straight from a stream instead of a local file.
+     */
+    String createFile(String name, InputStream content, List<String> parents, String fileMimeType, String fileContentMimeType) throws IOException, GeneralSecurityException;
+
+    /**
+     * Same as {@link #updateFile(String, File, String)}, but uploads the content straight from a stream instead of a local file.
+     */
+    void updateFile(String fileId, InputStream content, String fileContentMimeType) throws IOException, GeneralSecurityException;
+
     List<String> searchForFile(String name, String mimeType) throws IOException, GeneralSecurityException;
 
     String getFile(String fileId) throws IOException, GeneralSecurityException;
@@ -6,7 +6,9 @@ import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.AbstractInputStreamContent;
 import com.google.api.client.http.FileContent;
+import com.google.api.client.http.InputStreamContent;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
@@ -23,6 +25,7 @@ import se.perfektum.econostats.domain.PayeeFilter;
 import se.perfektum.econostats.utils.JsonUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -52,6 +55,15 @@ public class GoogleDriveDao implements AccountTransactionDao {
     private static final List<String> SCOPES = Collections.singletonList(DriveScopes.DRIVE_FILE);
     private static final String CREDENTIALS_FILE_PATH = "/credentials.json";
 
+    private boolean keepLocalCopies = true;
+
+    /**
+     * @param keepLocalCopies Whether json files are also saved locally before they are uploaded. They are uploaded from memory either way.
+     */
+    public void setKeepLocalCopies(boolean keepLocalCopies) {
+        this.keepLocalCopies = keepLocalCopies;
+    }
+
     @Override
     public String createFolder(String name) throws IOException, GeneralSecurityException {
         File fileMetadata = new File();
@@ -65,20 +77,50 @@ public class GoogleDriveDao implements AccountTransactionDao {
 
     @Override
     public String createFile(java.io.File filePath, List<String> parents, String fileMimeType, String fileContentMimeType) throws IOException, GeneralSecurityException {
+        LOGGER.debug(String.format("Creating file on Google Drive: filePath:[%s], parents:[%s], fileMimeType:[%s], fileContentMimeType:[%s]", filePath, parents, fileMimeType, fileContentMimeType));
+        return createFile(filePath.getName(), new FileContent(fileContentMimeType, filePath), parents, fileMimeType);
+    }
+
+    @Override
+    public String createFile(String name, InputStream content, List<String> parents, String fileMimeType, String fileContentMimeType) throws IOException, GeneralSecurityException {
+        LOGGER.debug(String.format("Creating file on Google Drive from stream: name:[%s], parents:[%s], fileMimeType:[%s], fileContentMimeType:[%s]", name, parents, fileMimeType, fileContentMimeType));
+        return createFile(name, newInputStreamContent(fileContentMimeType, content), parents, fileMimeType);
+    }
+
+    @Override
+    public void updateFile(String fileId, java.io.File filePath, String fileContentMimeType) throws IOException, GeneralSecurityException {
+        LOGGER.debug(String.format("Updating file on Google Drive - fileId:[%s], fileContentMimeType:[%s], filePath:[%s]", fileId, fileContentMimeType, filePath));
+        updateFile(fileId, new FileContent(fileContentMimeType, filePath));
+    }
+
+    @Override
+    public void updateFile(String fileId, InputStream content, String fileContentMimeType) throws IOException, GeneralSecurityException {
+        LOGGER.debug(String.format("Updating file on Google Drive from stream - fileId:[%s], fileContentMimeType:[%s]", fileId, fileContentMimeType));
+        updateFile(fileId, newInputStreamContent(fileContentMimeType, content));
+    }
+
+    /**
+     * The length of a ByteArrayInputStream is known up front, so it is set on the content and the upload does not have to find it out by buffering.
+     */
+    private static InputStreamContent newInputStreamContent(String fileContentMimeType, InputStream content) {
+        InputStreamContent mediaContent = new InputStreamContent(fileContentMimeType, content);
+        if (content instanceof ByteArrayInputStream) {
+            mediaContent.setLength(((ByteArrayInputStream) content).available());
+        }
+        return mediaContent;
+    }
+
+    private String createFile(String name, AbstractInputStreamContent mediaContent, List<String> parents, String fileMimeType) throws IOException, GeneralSecurityException {
         File fileMetadata = new File();
-        fileMetadata.setName(filePath.getName());
+        fileMetadata.setName(name);
         fileMetadata.setParents(parents);
         fileMetadata.setMimeType(fileMimeType);
 
-        FileContent mediaContent = new FileContent(fileContentMimeType, filePath);
-
-        LOGGER.debug(String.format("Creating file on Google Drive: filePath:[%s], parents:[%s], fileMimeType:[%s], fileContentMimeType:[%s]", filePath, parents, fileMimeType, fileContentMimeType));
         File file = getService().files().create(fileMetadata, mediaContent).setFields("id").execute();
         return file.getId();
     }
 
-    @Override
-    public void updateFile(String fileId, java.io.File filePath, String fileContentMimeType) throws IOException, GeneralSecurityException {
+    private void updateFile(String fileId, AbstractInputStreamContent mediaContent) throws IOException, GeneralSecurityException {
         LOGGER.debug(String.format("Fetching file from Google Drive - fileId:[%s]", fileId));
         File existingFile = getService().files().get(fileId).execute();
         File fileMetadata = new File();
@@ -86,10 +128,8 @@ public class GoogleDriveDao implements AccountTransactionDao {
         fileMetadata.setParents(existingFile.getParents());
         fileMetadata.setMimeType(existingFile.getMimeType());
 
-        FileContent mediaContent = new FileContent(fileContentMimeType, filePath);
-
-        LOGGER.debug(String.format("Updating file on Google Drive with the following parameters - fileId:[%s], name:[%s], parents:[%s], mimeType:[%s], fileContentMimeType:[%s], filePath:[%s]", fileId,
-                fileMetadata.getName(), fileMetadata.getParents(), fileMetadata.getMimeType(), fileContentMimeType, filePath));
+        LOGGER.debug(String.format("Updating file on Google Drive with the following parameters - fileId:[%s], name:[%s], parents:[%s], mimeType:[%s], fileContentMimeType:[%s]", fileId,
+                fileMetadata.getName(), fileMetadata.getParents(), fileMetadata.getMimeType(), mediaContent.getType()));
         getService().files().update(fileId, fileMetadata, mediaContent).execute();
     }
 
@@ -118,10 +158,11 @@ public class GoogleDriveDao implements AccountTransactionDao {
 
     @Override
     public String getFile(String fileId) throws IOException, GeneralSecurityException {
-        OutputStream outputStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         LOGGER.debug(String.format("Downloading file from Google Drive - fileId:'%s'", fileId));
         getService().files().get(fileId).executeMediaAndDownloadTo(outputStream);
-        return outputStream.toString();
+        // files are uploaded as UTF-8, so the content is the same string whatever the platform charset
+        return outputStream.toString(StandardCharsets.UTF_8.name());
     }
 
     @Override
@@ -176,13 +217,14 @@ public class GoogleDriveDao implements AccountTransactionDao {
 
     private void saveJsonItemsToDrive(List<?> jsonItems, String name, String rootName) {
         String convertedJsonItems = JsonUtils.convertObjectsToJson(jsonItems, rootName);
+        byte[] content = convertedJsonItems.getBytes(StandardCharsets.UTF_8);
 
-        // Save file locally first, in order to be able to upload the file to Drive
-        java.io.File filePathTransactions = null;
-        try {
-            filePathTransactions = saveFileLocally(String.format("output/%s.json", name), convertedJsonItems);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (keepLocalCopies) {
+            try {
+                saveFileLocally(String.format("output/%s.json", name), convertedJsonItems);
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not save local copy of '%s.json'", name), e);
+            }
         }
 
         try {
@@ -193,12 +235,13 @@ public class GoogleDriveDao implements AccountTransactionDao {
                 folderId = createFolder(storagePath);
             }
             if (fileId == null) {
-                createFile(filePathTransactions, Arrays.asList(folderId), MimeTypes.APPLICATION_JSON.toString(), MimeTypes.APPLICATION_JSON.toString());
+                createFile(String.format("%s.json", name), new ByteArrayInputStream(content), Arrays.asList(folderId), MimeTypes.APPLICATION_JSON.toString(),
+                        MimeTypes.APPLICATION_JSON.toString());
             } else {
-                updateFile(fileId, new java.io.File(String.format("output/%s.json", name)), MimeTypes.APPLICATION_JSON.toString());
+                updateFile(fileId, new ByteArrayInputStream(content), MimeTypes.APPLICATION_JSON.toString());
             }
         } catch (IOException | GeneralSecurityException e) {
-            e.printStackTrace();
+            LOGGER.error(String.format("Could not save '%s.json' to Google Drive", name), e);
         }
     }
 
@@ -0,0 +1,320 @@
+package se.perfektum.econostats.domain;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable counterpart of {@link AccountTransaction}, meant for merges and set operations over large histories. The hash code and a 64-bit content
+ * fingerprint are computed once when the transaction is built.
+ * <p>
+ * Equality covers the same fields as AccountTransaction (the stamps are not included), and the hash code is the same as that of the equal
+ * AccountTransaction. Equal transactions always have the same fingerprint, also across runs, so fingerprints can be persisted.
+ */
+public final class ImmutableAccountTransaction {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LocalDate date;
+    private final BigDecimal amount;
+    private final String sender;
+    private final String receiver;
+    private final String name;
+    private final String header;
+    private final BigDecimal balance;
+    private final String currency;
+    private final LocalDateTime stampInserted;
+    private final LocalDateTime stampChanged;
+    private final String category;
+
+    private final int hash;
+    private final long fingerprint;
+
+    private ImmutableAccountTransaction(Builder b) {
+        this.date = b.date;
+        this.amount = b.amount;
+        this.sender = b.sender;
+        this.receiver = b.receiver;
+        this.name = b.name;
+        this.header = b.header;
+        this.balance = b.balance;
+        this.currency = b.currency;
+        this.stampInserted = b.stampInserted;
+        this.stampChanged = b.stampChanged;
+        this.category = b.category;
+        // Same as AccountTransaction.hashCode()
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((amount == null) ? 0 : amount.hashCode());
+        result = prime * result + ((balance == null) ? 0 : balance.hashCode());
+        result = prime * result + ((category == null) ? 0 : category.hashCode());
+        result = prime * result + ((currency == null) ? 0 : currency.hashCode());
+        result = prime * result + ((date == null) ? 0 : date.hashCode());
+        result = prime * result + ((header == null) ? 0 : header.hashCode());
+        result = prime * result + ((name == null) ? 0 : name.hashCode());
+        result = prime * result + ((receiver == null) ? 0 : receiver.hashCode());
+        result = prime * result + ((sender == null) ? 0 : sender.hashCode());
+        this.hash = result;
+        this.fingerprint = fingerprint(date, amount, sender, receiver, name, header, balance, currency, category);
+    }
+
+    public static ImmutableAccountTransaction of(AccountTransaction at) {
+        return new Builder().date(at.getDate())
+                .amount(at.getAmount())
+                .sender(at.getSender())
+                .receiver(at.getReceiver())
+                .name(at.getName())
+                .header(at.getHeader())
+                .balance(at.getBalance())
+                .currency(at.getCurrency())
+                .stampInserted(at.getStampInserted())
+                .stampChanged(at.getStampChanged())
+                .category(at.getCategory())
+                .build();
+    }
+
+    /**
+     * Computes the fingerprint of a mutable AccountTransaction, the same as {@code of(at).getFingerprint()}.
+     */
+    public static long fingerprint(AccountTransaction at) {
+        return fingerprint(at.getDate(), at.getAmount(), at.getSender(), at.getReceiver(), at.getName(), at.getHeader(), at.getBalance(), at.getCurrency(),
+                at.getCategory());
+    }
+
+    public AccountTransaction toAccountTransaction() {
+        return new AccountTransaction.Builder().date(date)
+                .amount(amount)
+                .sender(sender)
+                .receiver(receiver)
+                .name(name)
+                .header(header)
+                .balance(balance)
+                .currency(currency)
+                .stampInserted(stampInserted)
+                .stampChanged(stampChanged)
+                .category(category)
+                .build();
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public LocalDateTime getStampInserted() {
+        return stampInserted;
+    }
+
+    public LocalDateTime getStampChanged() {
+        return stampChanged;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return a 64-bit FNV-1a hash of the fields compared by {@link #equals(Object)}
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public static class Builder {
+        private LocalDate date;
+        private BigDecimal amount;
+        private String sender;
+        private String receiver;
+        private String name;
+        private String header;
+        private BigDecimal balance;
+        private String currency;
+        private LocalDateTime stampInserted;
+        private LocalDateTime stampChanged;
+        private String category;
+
+        public Builder date(LocalDate date) {
+            this.date = date;
+            return this;
+        }
+
+        public Builder amount(BigDecimal amount) {
+            this.amount = amount;
+            return this;
+        }
+
+        public Builder sender(String sender) {
+            this.sender = sender;
+            return this;
+        }
+
+        public Builder receiver(String receiver) {
+            this.receiver = receiver;
+            return this;
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder header(String header) {
+            this.header = header;
+            return this;
+        }
+
+        public Builder balance(BigDecimal balance) {
+            this.balance = balance;
+            return this;
+        }
+
+        public Builder currency(String currency) {
+            this.currency = currency;
+            return this;
+        }
+
+        public Builder stampInserted(LocalDateTime stampInserted) {
+            this.stampInserted = stampInserted;
+            return this;
+        }
+
+        public Builder stampChanged(LocalDateTime stampChanged) {
+            this.stampChanged = stampChanged;
+            return this;
+        }
+
+        public Builder category(String category) {
+            this.category = category;
+            return this;
+        }
+
+        public ImmutableAccountTransaction build() {
+            return new ImmutableAccountTransaction(this);
+        }
+    }
+
+    private static long fingerprint(LocalDate date, BigDecimal amount, String sender, String receiver, String name, String header, BigDecimal balance,
+            String currency, String category) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = date == null ? mix(hash, 0) : mixLong(mix(hash, 1), date.toEpochDay());
+        hash = mixDecimal(hash, amount);
+        hash = mixDecimal(hash, balance);
+        hash = mixString(hash, sender);
+        hash = mixString(hash, receiver);
+        hash = mixString(hash, name);
+        hash = mixString(hash, header);
+        hash = mixString(hash, currency);
+        hash = mixString(hash, category);
+        return hash;
+    }
+
+    private static long mix(long hash, int octet) {
+        return (hash ^ (octet & 0xff)) * FNV_PRIME;
+    }
+
+    private static long mixInt(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash = mix(hash, value >>> shift);
+        }
+        return hash;
+    }
+
+    private static long mixLong(long hash, long value) {
+        return mixInt(mixInt(hash, (int) value), (int) (value >>> 32));
+    }
+
+    /**
+     * Scale is included, since BigDecimal.equals treats 67 and 67.00 as different.
+     */
+    private static long mixDecimal(long hash, BigDecimal value) {
+        if (value == null) {
+            return mix(hash, 0);
+        }
+        hash = mixInt(mix(hash, 1), value.scale());
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < 64) {
+            return mixLong(mix(hash, 0), unscaled.longValue());
+        }
+        byte[] bytes = unscaled.toByteArray();
+        hash = mixInt(mix(hash, 1), bytes.length);
+        for (byte b : bytes) {
+            hash = mix(hash, b);
+        }
+        return hash;
+    }
+
+    /**
+     * The length is included, so the boundary between two strings is part of the fingerprint.
+     */
+    private static long mixString(long hash, String value) {
+        if (value == null) {
+            return mix(hash, 0);
+        }
+        hash = mixInt(mix(hash, 1), value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = mix(mix(hash, c), c >>> 8);
+        }
+        return hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ImmutableAccountTransaction other = (ImmutableAccountTransaction) obj;
+        if (hash != other.hash || fingerprint != other.fingerprint)
+            return false;
+        return equals(amount, other.amount) && equals(balance, other.balance) && equals(category, other.category) && equals(currency, other.currency)
+                && equals(date, other.date) && equals(header, other.header) && equals(name, other.name) && equals(receiver, other.receiver)
+                && equals(sender, other.sender);
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    @Override
+    public String toString() {
+        return "ImmutableAccountTransaction [date=" + date + ", amount=" + amount + ", sender=" + sender + ", receiver=" + receiver + ", name=" + name + ", header=" + header
+                + ", balance=" + balance + ", currency=" + currency + ", stampInserted=" + stampInserted + ", stampChanged=" + stampChanged + ", category=" + category
+                + "]";
+    }
+}
@@ -0,0 +1,108 @@
+package se.perfektum.econostats.domain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning dictionary for the text fields of AccountTransactions. Headers, senders, receivers and currencies repeat on almost every row, so equal
+ * values are stored once and given a small id that stays the same for the lifetime of the application. The lower case form of each value is computed
+ * once and cached, so matching code can compare ids or cached lower case values instead of calling toLowerCase on every row.
+ * <p>
+ * Thread safe. Lookups of values already in the pool do not lock.
+ */
+public final class StringPool {
+    public static final int NO_ID = -1;
+
+    private static final StringPool INSTANCE = new StringPool();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[INITIAL_CAPACITY];
+    private volatile int[] lowerCaseIds = new int[INITIAL_CAPACITY];
+    private int size;
+
+    StringPool() {
+    }
+
+    /**
+     * The pool shared by the csv readers, json deserialization and TransactionTables.
+     */
+    public static StringPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the pooled instance equal to value, or null if value is null
+     */
+    public String intern(String value) {
+        return value == null ? null : get(idOf(value));
+    }
+
+    /**
+     * Gets the id of a value, adding it to the pool if needed.
+     *
+     * @return the id, or {@link #NO_ID} if value is null
+     */
+    public int idOf(String value) {
+        if (value == null) {
+            return NO_ID;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : add(value);
+    }
+
+    public String get(int id) {
+        return id == NO_ID ? null : values[id];
+    }
+
+    /**
+     * @return the id of the lower case form of the value with the given id
+     */
+    public int lowerCaseIdOf(int id) {
+        return id == NO_ID ? NO_ID : lowerCaseIds[id];
+    }
+
+    /**
+     * @return the pooled lower case form of value, computed only the first time a value is seen
+     */
+    public String toLowerCase(String value) {
+        return get(lowerCaseIdOf(idOf(value)));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int id = store(value);
+        String lowerCase = value.toLowerCase();
+        if (lowerCase.equals(value)) {
+            lowerCaseIds[id] = id;
+        } else {
+            Integer lowerCaseId = ids.get(lowerCase);
+            if (lowerCaseId == null) {
+                lowerCaseId = store(lowerCase);
+                lowerCaseIds[lowerCaseId] = lowerCaseId;
+                ids.put(lowerCase, lowerCaseId);
+            }
+            lowerCaseIds[id] = lowerCaseId;
+        }
+        // Published last, so a reader that finds the id also sees the value and its lower case form
+        ids.put(value, id);
+        return id;
+    }
+
+    private int store(String value) {
+        if (size == values.length) {
+            lowerCaseIds = Arrays.copyOf(lowerCaseIds, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        return size++;
+    }
+}
@@ -0,0 +1,369 @@
+package se.perfektum.econostats.domain;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar, primitive-backed storage of AccountTransactions. Dates are stored as epoch days, amounts and balances as minor units (öre), stamps as
+ * nanoseconds since the epoch (UTC) and all text fields as ids in the shared {@link StringPool}, so a row costs about 60 bytes instead of several
+ * hundred, and text columns of different tables can be compared by id.
+ * <p>
+ * Rows can be read column by column, materialized one at a time with {@link #get(int)} or through the {@link #asList()} view. Amounts are normalized to
+ * two decimals, so an amount stored as "67" is read back as "67.00", and amounts with more decimals are rejected. Two rows are equal if the fields
+ * compared by {@link AccountTransaction#equals} are equal, except that amounts and balances are compared by value: "67" and "67.00" are different in
+ * AccountTransaction but equal here.
+ */
+public class TransactionTable {
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final int MINOR_UNIT_SCALE = 2;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int size;
+    private int[] dates;
+    private long[] amounts;
+    private long[] balances;
+    private long[] stampsInserted;
+    private long[] stampsChanged;
+    private int[] senders;
+    private int[] receivers;
+    private int[] names;
+    private int[] headers;
+    private int[] currencies;
+    private int[] categories;
+
+    private final StringPool pool = StringPool.getInstance();
+
+    public TransactionTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransactionTable(int capacity) {
+        capacity = Math.max(capacity, 1);
+        dates = new int[capacity];
+        amounts = new long[capacity];
+        balances = new long[capacity];
+        stampsInserted = new long[capacity];
+        stampsChanged = new long[capacity];
+        senders = new int[capacity];
+        receivers = new int[capacity];
+        names = new int[capacity];
+        headers = new int[capacity];
+        currencies = new int[capacity];
+        categories = new int[capacity];
+    }
+
+    /**
+     * Creates a table holding the given transactions, in order.
+     */
+    public static TransactionTable of(Collection<AccountTransaction> accountTransactions) {
+        TransactionTable table = new TransactionTable(accountTransactions.size());
+        accountTransactions.forEach(table::add);
+        return table;
+    }
+
+    /**
+     * Creates a table holding all rows of the first table followed by the rows of the second table that are not already present. Like
+     * {@code Stream.concat(first, second).distinct()}, but without materializing any AccountTransactions.
+     */
+    public static TransactionTable concatDistinct(TransactionTable first, TransactionTable second) {
+        TransactionTable result = new TransactionTable(first.size + second.size);
+        // Open addressing hash table of row indices in result, -1 meaning empty
+        int[] slots = new int[Integer.highestOneBit(Math.max(first.size + second.size, 1) * 2) * 2];
+        Arrays.fill(slots, -1);
+        for (TransactionTable table : Arrays.asList(first, second)) {
+            for (int row = 0; row < table.size; row++) {
+                int slot = table.rowHashCode(row) & (slots.length - 1);
+                boolean duplicate = false;
+                while (slots[slot] != -1) {
+                    if (result.rowEquals(slots[slot], table, row)) {
+                        duplicate = true;
+                        break;
+                    }
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                if (!duplicate) {
+                    slots[slot] = result.size;
+                    result.add(table, row);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a transaction.
+     *
+     * @throws IllegalArgumentException if the amount or balance has more than two decimals, or does not fit in a long of minor units
+     */
+    public void add(AccountTransaction at) {
+        long amount = toMinorUnits(at.getAmount(), "Amount");
+        long balance = toMinorUnits(at.getBalance(), "Balance");
+        ensureCapacity(size + 1);
+        dates[size] = at.getDate() == null ? Integer.MIN_VALUE : (int) at.getDate().toEpochDay();
+        amounts[size] = amount;
+        balances[size] = balance;
+        stampsInserted[size] = toEpochNanos(at.getStampInserted());
+        stampsChanged[size] = toEpochNanos(at.getStampChanged());
+        senders[size] = pool.idOf(at.getSender());
+        receivers[size] = pool.idOf(at.getReceiver());
+        names[size] = pool.idOf(at.getName());
+        headers[size] = pool.idOf(at.getHeader());
+        currencies[size] = pool.idOf(at.getCurrency());
+        categories[size] = pool.idOf(at.getCategory());
+        size++;
+    }
+
+    /**
+     * Appends a row of another table, without materializing it.
+     */
+    public void add(TransactionTable source, int row) {
+        ensureCapacity(size + 1);
+        dates[size] = source.dates[row];
+        amounts[size] = source.amounts[row];
+        balances[size] = source.balances[row];
+        stampsInserted[size] = source.stampsInserted[row];
+        stampsChanged[size] = source.stampsChanged[row];
+        senders[size] = source.senders[row];
+        receivers[size] = source.receivers[row];
+        names[size] = source.names[row];
+        headers[size] = source.headers[row];
+        currencies[size] = source.currencies[row];
+        categories[size] = source.categories[row];
+        size++;
+    }
+
+    /**
+     * Materializes a row.
+     */
+    public AccountTransaction get(int row) {
+        checkRow(row);
+        return new AccountTransaction.Builder().date(getDate(row))
+                .amount(getAmount(row))
+                .balance(getBalance(row))
+                .sender(getSender(row))
+                .receiver(getReceiver(row))
+                .name(getName(row))
+                .header(getHeader(row))
+                .currency(getCurrency(row))
+                .category(getCategory(row))
+                .stampInserted(fromEpochNanos(stampsInserted[row]))
+                .stampChanged(fromEpochNanos(stampsChanged[row]))
+                .build();
+    }
+
+    /**
+     * An unmodifiable list view of the table. Rows are materialized each time they are accessed.
+     */
+    public List<AccountTransaction> asList() {
+        return new RowList();
+    }
+
+    public int getEpochDay(int row) {
+        checkRow(row);
+        return dates[row];
+    }
+
+    public LocalDate getDate(int row) {
+        checkRow(row);
+        return dates[row] == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(dates[row]);
+    }
+
+    public boolean hasAmount(int row) {
+        checkRow(row);
+        return amounts[row] != NO_VALUE;
+    }
+
+    /**
+     * @return the amount in minor units, only valid if {@link #hasAmount(int)}
+     */
+    public long getAmountMinorUnits(int row) {
+        checkRow(row);
+        return amounts[row];
+    }
+
+    public BigDecimal getAmount(int row) {
+        checkRow(row);
+        return fromMinorUnits(amounts[row]);
+    }
+
+    public boolean hasBalance(int row) {
+        checkRow(row);
+        return balances[row] != NO_VALUE;
+    }
+
+    /**
+     * @return the balance in minor units, only valid if {@link #hasBalance(int)}
+     */
+    public long getBalanceMinorUnits(int row) {
+        checkRow(row);
+        return balances[row];
+    }
+
+    public BigDecimal getBalance(int row) {
+        checkRow(row);
+        return fromMinorUnits(balances[row]);
+    }
+
+    public int getSenderId(int row) {
+        checkRow(row);
+        return senders[row];
+    }
+
+    public String getSender(int row) {
+        return getString(getSenderId(row));
+    }
+
+    public int getReceiverId(int row) {
+        checkRow(row);
+        return receivers[row];
+    }
+
+    public String getReceiver(int row) {
+        return getString(getReceiverId(row));
+    }
+
+    public int getNameId(int row) {
+        checkRow(row);
+        return names[row];
+    }
+
+    public String getName(int row) {
+        return getString(getNameId(row));
+    }
+
+    public int getHeaderId(int row) {
+        checkRow(row);
+        return headers[row];
+    }
+
+    public String getHeader(int row) {
+        return getString(getHeaderId(row));
+    }
+
+    public int getCurrencyId(int row) {
+        checkRow(row);
+        return currencies[row];
+    }
+
+    public String getCurrency(int row) {
+        return getString(getCurrencyId(row));
+    }
+
+    public int getCategoryId(int row) {
+        checkRow(row);
+        return categories[row];
+    }
+
+    public String getCategory(int row) {
+        return getString(getCategoryId(row));
+    }
+
+    /**
+     * Gets the text of a {@link StringPool} id, as returned by eg. {@link #getHeaderId(int)}.
+     */
+    public String getString(int id) {
+        return pool.get(id);
+    }
+
+    /**
+     * Compares a row of this table with a row of another (or the same) table.
+     */
+    public boolean rowEquals(int row, TransactionTable other, int otherRow) {
+        return dates[row] == other.dates[otherRow] && amounts[row] == other.amounts[otherRow] && balances[row] == other.balances[otherRow]
+                && senders[row] == other.senders[otherRow] && receivers[row] == other.receivers[otherRow] && names[row] == other.names[otherRow]
+                && headers[row] == other.headers[otherRow] && currencies[row] == other.currencies[otherRow] && categories[row] == other.categories[otherRow];
+    }
+
+    /**
+     * Hash code of a row, consistent with {@link #rowEquals(int, TransactionTable, int)} across tables.
+     */
+    public int rowHashCode(int row) {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + dates[row];
+        result = prime * result + Long.hashCode(amounts[row]);
+        result = prime * result + Long.hashCode(balances[row]);
+        result = prime * result + senders[row];
+        result = prime * result + receivers[row];
+        result = prime * result + names[row];
+        result = prime * result + headers[row];
+        result = prime * result + currencies[row];
+        result = prime * result + categories[row];
+        return result;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("Row: %d, Size: %d", row, size));
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= dates.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, dates.length * 2);
+        dates = Arrays.copyOf(dates, newCapacity);
+        amounts = Arrays.copyOf(amounts, newCapacity);
+        balances = Arrays.copyOf(balances, newCapacity);
+        stampsInserted = Arrays.copyOf(stampsInserted, newCapacity);
+        stampsChanged = Arrays.copyOf(stampsChanged, newCapacity);
+        senders = Arrays.copyOf(senders, newCapacity);
+        receivers = Arrays.copyOf(receivers, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        headers = Arrays.copyOf(headers, newCapacity);
+        currencies = Arrays.copyOf(currencies, newCapacity);
+        categories = Arrays.copyOf(categories, newCapacity);
+    }
+
+    private static long toMinorUnits(BigDecimal value, String column) {
+        if (value == null) {
+            return NO_VALUE;
+        }
+        long minorUnits;
+        try {
+            minorUnits = value.movePointRight(MINOR_UNIT_SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format("%s %s has more than %d decimals or is out of range", column, value.toPlainString(), MINOR_UNIT_SCALE), e);
+        }
+        if (minorUnits == NO_VALUE) {
+            throw new IllegalArgumentException(String.format("%s %s is out of range", column, value.toPlainString()));
+        }
+        return minorUnits;
+    }
+
+    private static BigDecimal fromMinorUnits(long value) {
+        return value == NO_VALUE ? null : BigDecimal.valueOf(value, MINOR_UNIT_SCALE);
+    }
+
+    private static long toEpochNanos(LocalDateTime value) {
+        return value == null ? NO_VALUE : value.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + value.getNano();
+    }
+
+    private static LocalDateTime fromEpochNanos(long value) {
+        return value == NO_VALUE ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1_000_000_000L), (int) Math.floorMod(value, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private class RowList extends AbstractList<AccountTransaction> implements RandomAccess {
+        @Override
+        public AccountTransaction get(int index) {
+            return TransactionTable.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
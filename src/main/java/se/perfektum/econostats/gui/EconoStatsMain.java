@@ -40,6 +40,11 @@ public class EconoStatsMain extends Application {
         launch(args);
     }
 
+    @Override
+    public void stop() {
+        econoStatsController.stopCsvWatcher();
+    }
+
     @Override
     public void start(Stage primaryStage) {
         EconoStatsMain.primaryStage = primaryStage;
@@ -47,6 +52,8 @@ public class EconoStatsMain extends Application {
         initRootLayout();
         showEconoStatsOverview();
         showPayeeFilterOverview();
+        // Started once JavaFX is up, as imported batches read the PayeeFilters on the JavaFX thread
+        econoStatsController.startCsvWatcher();
     }
 
     /**
@@ -75,6 +75,11 @@ public class EconoStatsOverviewController {
         if (file.exists() && !file.isDirectory()) {
             accountTransactions = econoStatsController.fetchAccountTransactions(csvPath.getText());
             econoStatsController.setAccountTransactions(accountTransactions);
+        } else if (file.isDirectory()) {
+            accountTransactions = econoStatsController.fetchAccountTransactionsFromDirectory(csvPath.getText());
+            if (accountTransactions != null) {
+                econoStatsController.setAccountTransactions(accountTransactions);
+            }
         }
         if (accountTransactions != null && accountTransactions.size() > 0) {
             LOGGER.debug(String.format("Loaded %s Account Transactions from disk", accountTransactions.size()));
@@ -0,0 +1,79 @@
+package se.perfektum.econostats.matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+/**
+ * The result of {@link TransactionClassifier#classify(List)}. Each classified transaction is in exactly one of the excluded, matched and unmatched
+ * lists, in the order they were classified. Immutable.
+ */
+public final class Classification {
+    private final List<PayeeFilter> payeeFilters;
+    private final List<AccountTransaction> excluded;
+    private final List<AccountTransaction> matched;
+    private final List<int[]> matchingFilters;
+    private final List<AccountTransaction> unmatched;
+
+    Classification(List<PayeeFilter> payeeFilters, List<AccountTransaction> excluded, List<AccountTransaction> matched, List<int[]> matchingFilters,
+            List<AccountTransaction> unmatched) {
+        this.payeeFilters = payeeFilters;
+        this.excluded = Collections.unmodifiableList(excluded);
+        this.matched = Collections.unmodifiableList(matched);
+        this.matchingFilters = matchingFilters;
+        this.unmatched = Collections.unmodifiableList(unmatched);
+    }
+
+    /**
+     * @return the filters the transactions were classified by, indexed as returned by {@link #getMatchingFilters(int)}
+     */
+    public List<PayeeFilter> getPayeeFilters() {
+        return payeeFilters;
+    }
+
+    /**
+     * @return the transactions whose header equals an excluded payee
+     */
+    public List<AccountTransaction> getExcluded() {
+        return excluded;
+    }
+
+    /**
+     * @return the transactions matched by at least one filter
+     */
+    public List<AccountTransaction> getMatched() {
+        return matched;
+    }
+
+    /**
+     * @param index The index of a transaction in {@link #getMatched()}
+     * @return the sorted indices of the filters matching the transaction. Shared, and must not be modified.
+     */
+    public int[] getMatchingFilters(int index) {
+        return matchingFilters.get(index);
+    }
+
+    /**
+     * @return the transactions matched by the filter with the given index
+     */
+    public List<AccountTransaction> getMatched(int filter) {
+        List<AccountTransaction> result = new ArrayList<>();
+        for (int i = 0; i < matched.size(); i++) {
+            if (Arrays.binarySearch(matchingFilters.get(i), filter) >= 0) {
+                result.add(matched.get(i));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the transactions that are neither excluded nor matched by any filter
+     */
+    public List<AccountTransaction> getUnmatched() {
+        return unmatched;
+    }
+}
@@ -0,0 +1,187 @@
+package se.perfektum.econostats.matching;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.domain.StringPool;
+
+/**
+ * Finds the PayeeFilters matching a transaction header. A filter matches if any of its payees is contained in the header, ignoring case. The payees of
+ * all filters are compiled into one Aho-Corasick automaton, so all matching filters are found in a single scan of the header, however many filters and
+ * payees there are.
+ * <p>
+ * The result for each distinct header (ignoring case) is cached, as a history of tens of thousands of transactions only has a few hundred distinct
+ * headers. A matcher is therefore meant to be kept for as long as the filters it was built from are unchanged, see {@link #of(List)}.
+ * <p>
+ * Thread safe.
+ */
+public final class PayeeMatcher {
+    private static final int ROOT = 0;
+    private static final StringPool POOL = StringPool.getInstance();
+
+    // The matcher of the filters last asked for, shared by everything classifying transactions
+    private static volatile PayeeMatcher last;
+
+    private final List<PayeeFilter> payeeFilters;
+    // Transitions of each node, as sorted characters and their target nodes
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] failures;
+    // Sorted indices of the filters matching when a node is reached, including those of its failure nodes
+    private final int[][] outputs;
+    // Matching filters by StringPool id of the lower case header
+    private final Map<Integer, int[]> matchesByHeaderId = new ConcurrentHashMap<>();
+
+    public PayeeMatcher(List<PayeeFilter> payeeFilters) {
+        this.payeeFilters = Collections.unmodifiableList(new ArrayList<>(payeeFilters));
+
+        // Trie of all lower case payees
+        List<TreeMap<Character, Integer>> transitions = new ArrayList<>();
+        List<TreeSet<Integer>> matches = new ArrayList<>();
+        transitions.add(new TreeMap<>());
+        matches.add(new TreeSet<>());
+        for (int i = 0; i < this.payeeFilters.size(); i++) {
+            for (String payee : this.payeeFilters.get(i).getPayees()) {
+                if (payee == null) {
+                    continue;
+                }
+                String lowerCasePayee = payee.toLowerCase();
+                int node = ROOT;
+                for (int j = 0; j < lowerCasePayee.length(); j++) {
+                    Integer next = transitions.get(node).get(lowerCasePayee.charAt(j));
+                    if (next == null) {
+                        next = transitions.size();
+                        transitions.get(node).put(lowerCasePayee.charAt(j), next);
+                        transitions.add(new TreeMap<>());
+                        matches.add(new TreeSet<>());
+                    }
+                    node = next;
+                }
+                matches.get(node).add(i);
+            }
+        }
+
+        // Failure links, breadth first so the failure node of a node is always done before it
+        int nodeCount = transitions.size();
+        failures = new int[nodeCount];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(ROOT).values()) {
+            failures[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> transition : transitions.get(node).entrySet()) {
+                int child = transition.getValue();
+                int failure = failures[node];
+                while (failure != ROOT && !transitions.get(failure).containsKey(transition.getKey())) {
+                    failure = failures[failure];
+                }
+                Integer target = transitions.get(failure).get(transition.getKey());
+                failures[child] = target == null ? ROOT : target;
+                matches.get(child).addAll(matches.get(failures[child]));
+                queue.add(child);
+            }
+        }
+
+        keys = new char[nodeCount][];
+        targets = new int[nodeCount][];
+        outputs = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            TreeMap<Character, Integer> nodeTransitions = transitions.get(node);
+            keys[node] = new char[nodeTransitions.size()];
+            targets[node] = new int[nodeTransitions.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> transition : nodeTransitions.entrySet()) {
+                keys[node][j] = transition.getKey();
+                targets[node][j++] = transition.getValue();
+            }
+            outputs[node] = matches.get(node).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Gets the matcher of the filters last asked for if the filters are equal, so headers already matched are not matched again. Otherwise a new
+     * matcher is built, and kept in place of the previous one.
+     */
+    public static PayeeMatcher of(List<PayeeFilter> payeeFilters) {
+        PayeeMatcher matcher = last;
+        if (matcher == null || !matcher.payeeFilters.equals(payeeFilters)) {
+            matcher = new PayeeMatcher(payeeFilters);
+            last = matcher;
+        }
+        return matcher;
+    }
+
+    /**
+     * @return the filters the matcher was built from, indexed as returned by {@link #match(String)}
+     */
+    public List<PayeeFilter> getPayeeFilters() {
+        return payeeFilters;
+    }
+
+    /**
+     * @return the sorted indices of all filters matching the header. The array is shared by all calls for the same header and must not be modified.
+     */
+    public int[] match(String header) {
+        return matchesByHeaderId.computeIfAbsent(POOL.lowerCaseIdOf(POOL.idOf(header)), this::scan);
+    }
+
+    /**
+     * @return the number of distinct headers matched so far
+     */
+    public int getCachedHeaderCount() {
+        return matchesByHeaderId.size();
+    }
+
+    private int[] scan(int headerId) {
+        String text = headerId == StringPool.NO_ID ? "" : POOL.get(headerId);
+        boolean[] matched = new boolean[payeeFilters.size()];
+        int count = collect(outputs[ROOT], matched, 0);
+        int node = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = next(node, c)) < 0 && node != ROOT) {
+                node = failures[node];
+            }
+            node = next < 0 ? ROOT : next;
+            count = collect(outputs[node], matched, count);
+            if (count == matched.length) {
+                break;
+            }
+        }
+
+        int[] result = new int[count];
+        for (int i = 0, j = 0; j < count; i++) {
+            if (matched[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    private static int collect(int[] output, boolean[] matched, int count) {
+        for (int filter : output) {
+            if (!matched[filter]) {
+                matched[filter] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int next(int node, char c) {
+        int i = Arrays.binarySearch(keys[node], c);
+        return i < 0 ? -1 : targets[node][i];
+    }
+}
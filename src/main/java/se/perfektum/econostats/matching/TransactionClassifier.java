@@ -0,0 +1,57 @@
+package se.perfektum.econostats.matching;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+/**
+ * Sorts transactions into excluded, matched and unmatched ones in a single pass. A transaction is excluded if its header equals an excluded payee of
+ * any filter, otherwise it is matched by the filters whose payees it contains (see {@link PayeeMatcher}), and unmatched if there are none.
+ * <p>
+ * Thread safe, and the classified transactions are never modified.
+ */
+public final class TransactionClassifier {
+    private final PayeeMatcher payeeMatcher;
+    private final Set<String> excludedPayees = new HashSet<>();
+
+    public TransactionClassifier(List<PayeeFilter> payeeFilters) {
+        this(new PayeeMatcher(payeeFilters));
+    }
+
+    /**
+     * Creates a classifier using an existing matcher, and the matches it has already cached.
+     */
+    public TransactionClassifier(PayeeMatcher payeeMatcher) {
+        this.payeeMatcher = payeeMatcher;
+        for (PayeeFilter filter : payeeMatcher.getPayeeFilters()) {
+            if (filter.getExcludedPayees() != null) {
+                excludedPayees.addAll(filter.getExcludedPayees());
+            }
+        }
+    }
+
+    public Classification classify(List<AccountTransaction> accountTransactions) {
+        List<AccountTransaction> excluded = new ArrayList<>();
+        List<AccountTransaction> matched = new ArrayList<>();
+        List<int[]> matchingFilters = new ArrayList<>();
+        List<AccountTransaction> unmatched = new ArrayList<>();
+        for (AccountTransaction transaction : accountTransactions) {
+            if (excludedPayees.contains(transaction.getHeader())) {
+                excluded.add(transaction);
+                continue;
+            }
+            int[] filters = payeeMatcher.match(transaction.getHeader());
+            if (filters.length == 0) {
+                unmatched.add(transaction);
+            } else {
+                matched.add(transaction);
+                matchingFilters.add(filters);
+            }
+        }
+        return new Classification(payeeMatcher.getPayeeFilters(), excluded, matched, matchingFilters, unmatched);
+    }
+}
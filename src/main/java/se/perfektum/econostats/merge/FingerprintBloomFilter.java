@@ -0,0 +1,190 @@
+package se.perfektum.econostats.merge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.ImmutableAccountTransaction;
+
+/**
+ * Bloom filter of transaction fingerprints, persisted next to the stored transactions. If the filter says a transaction is not there, it certainly is
+ * not stored, so an import can tell most new transactions apart without looking at the stored history.
+ * <p>
+ * The filter is saved with the digest of the stored history it holds, see {@link se.perfektum.econostats.utils.JsonUtils#digest(String)}. A filter
+ * whose digest differs from that of the stored history is stale (eg. the history was changed on another computer, or the upload of the history
+ * failed) and must not be used.
+ */
+public class FingerprintBloomFilter {
+    private static final int MAGIC = 0x45434246; // "ECBF"
+    // Increased when the bits of a transaction or the header change, so filters written by an older version are rebuilt
+    private static final int FORMAT_VERSION = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private long transactionCount;
+    private String historyDigest;
+
+    /**
+     * @param expectedInsertions The number of transactions the filter is sized for
+     * @param falsePositiveRate  The probability that a transaction that was never put is reported as present, once expectedInsertions transactions have
+     *                           been put
+     */
+    public FingerprintBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(String.format("Invalid Bloom filter size %d or false positive rate %s", expectedInsertions, falsePositiveRate));
+        }
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64)];
+        this.bitCount = bits.length * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    private FingerprintBloomFilter(long[] bits, int hashCount, long expectedInsertions, double falsePositiveRate, long transactionCount, String historyDigest) {
+        this.bits = bits;
+        this.bitCount = bits.length * 64L;
+        this.hashCount = hashCount;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.transactionCount = transactionCount;
+        this.historyDigest = historyDigest;
+    }
+
+    /**
+     * Creates a filter holding the given transactions, sized for at least twice as many.
+     */
+    public static FingerprintBloomFilter of(Collection<AccountTransaction> accountTransactions, long expectedInsertions, double falsePositiveRate) {
+        FingerprintBloomFilter filter = new FingerprintBloomFilter(Math.max(expectedInsertions, 2L * accountTransactions.size()), falsePositiveRate);
+        accountTransactions.forEach(filter::put);
+        return filter;
+    }
+
+    public void put(AccountTransaction at) {
+        long fingerprint = ImmutableAccountTransaction.fingerprint(at);
+        // Double hashing (Kirsch and Mitzenmacher) on the two halves of the fingerprint. hash2 is odd, so it is never 0, which would put all probes on
+        // the same bit
+        long hash1 = fingerprint & 0xffffffffL;
+        long hash2 = (fingerprint >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        transactionCount++;
+    }
+
+    /**
+     * @return false if the transaction has certainly not been put into the filter
+     */
+    public boolean mightContain(AccountTransaction at) {
+        long fingerprint = ImmutableAccountTransaction.fingerprint(at);
+        long hash1 = fingerprint & 0xffffffffL;
+        long hash2 = (fingerprint >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of transactions put into the filter
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return true if more transactions have been put than the filter is sized for, so the false positive rate is higher than configured
+     */
+    public boolean isSaturated() {
+        return transactionCount > expectedInsertions;
+    }
+
+    /**
+     * @return the digest of the stored history the filter holds, or null if it has not been set
+     */
+    public String getHistoryDigest() {
+        return historyDigest;
+    }
+
+    /**
+     * Sets the digest of the stored history the filter holds. Should only be set once the history has been stored, so a filter is never taken to hold
+     * a history that failed to be stored.
+     */
+    public void setHistoryDigest(String historyDigest) {
+        this.historyDigest = historyDigest;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Writes the filter through a temporary file, so a failed write never leaves a corrupt filter behind.
+     */
+    public void writeTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(expectedInsertions);
+                out.writeDouble(falsePositiveRate);
+                out.writeInt(hashCount);
+                out.writeLong(transactionCount);
+                out.writeUTF(historyDigest == null ? "" : historyDigest);
+                out.writeInt(bits.length);
+                for (long word : bits) {
+                    out.writeLong(word);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the filter stored in file, or null if there is no file
+     */
+    public static FingerprintBloomFilter readFrom(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException(String.format("File '%s' is not a fingerprint filter of a supported version", file));
+            }
+            long expectedInsertions = in.readLong();
+            double falsePositiveRate = in.readDouble();
+            int hashCount = in.readInt();
+            long transactionCount = in.readLong();
+            String historyDigest = in.readUTF();
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            return new FingerprintBloomFilter(bits, hashCount, expectedInsertions, falsePositiveRate, transactionCount, historyDigest.isEmpty() ? null : historyDigest);
+        }
+    }
+}
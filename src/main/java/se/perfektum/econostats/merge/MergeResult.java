@@ -0,0 +1,72 @@
+package se.perfektum.econostats.merge;
+
+/**
+ * The outcome of merging imported transactions into the stored history. Every imported transaction is counted exactly once, as new, already known or
+ * ambiguous.
+ *
+ * @param <T> The type holding the merged transactions, a List of AccountTransactions or a TransactionTable
+ */
+public class MergeResult<T> {
+    private final T transactions;
+    private final T addedTransactions;
+    private final int newCount;
+    private final int knownCount;
+    private final int ambiguousCount;
+
+    MergeResult(T transactions, T addedTransactions, int newCount, int knownCount, int ambiguousCount) {
+        this.transactions = transactions;
+        this.addedTransactions = addedTransactions;
+        this.newCount = newCount;
+        this.knownCount = knownCount;
+        this.ambiguousCount = ambiguousCount;
+    }
+
+    /**
+     * @return the merged transactions. The stored transactions followed by the added ones, or all of them sorted by date for
+     *         {@link TransactionMerger#mergeSorted(java.util.List, java.util.List)}.
+     */
+    public T getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * @return the imported transactions that were added to the stored ones
+     */
+    public T getAddedTransactions() {
+        return addedTransactions;
+    }
+
+    /**
+     * @return the number of imported transactions not present in the stored history
+     */
+    public int getNewCount() {
+        return newCount;
+    }
+
+    /**
+     * @return the number of imported transactions already present in the stored history
+     */
+    public int getKnownCount() {
+        return knownCount;
+    }
+
+    /**
+     * @return the number of imported transactions that were added, although identical transactions are already stored. They occur more times in the
+     *         import than in the stored history, which is either a genuine new duplicate or an import overlapping the history in an unexpected way.
+     */
+    public int getAmbiguousCount() {
+        return ambiguousCount;
+    }
+
+    /**
+     * @return the number of transactions added to the stored history
+     */
+    public int getAddedCount() {
+        return newCount + ambiguousCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MergeResult [newCount=" + newCount + ", knownCount=" + knownCount + ", ambiguousCount=" + ambiguousCount + "]";
+    }
+}
@@ -0,0 +1,238 @@
+package se.perfektum.econostats.merge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.ImmutableAccountTransaction;
+import se.perfektum.econostats.domain.TransactionTable;
+
+/**
+ * Merges imported transactions into the stored history as multisets. Transactions have no ids, so two identical transactions on the same day (eg. two
+ * deposits of the same amount) can only be told apart by how many times they occur. For each distinct transaction, the merged history holds as many
+ * copies as the import or the history, whichever has more. Genuine duplicates are kept, and re-importing an overlapping period adds nothing.
+ * <p>
+ * The work is proportional to the import: only imported transactions, and stored transactions on a date that occurs in the import, are hashed.
+ * {@link #mergeSorted(List, List)} goes further for histories kept sorted by date, and only looks at the part of the history that the import overlaps.
+ */
+public class TransactionMerger {
+    final Logger LOGGER = LoggerFactory.getLogger(TransactionMerger.class);
+
+    private static final Comparator<AccountTransaction> BY_DATE = Comparator.comparing(AccountTransaction::getDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    public MergeResult<List<AccountTransaction>> merge(List<AccountTransaction> importedAccountTransactions, List<AccountTransaction> dataStoreAccountTransactions) {
+        Plan plan = plan(importedAccountTransactions.size(), i -> ImmutableAccountTransaction.of(importedAccountTransactions.get(i)),
+                i -> epochDay(importedAccountTransactions.get(i)), dataStoreAccountTransactions.size(),
+                i -> ImmutableAccountTransaction.of(dataStoreAccountTransactions.get(i)), i -> epochDay(dataStoreAccountTransactions.get(i)));
+
+        List<AccountTransaction> added = new ArrayList<>(plan.addedRows.length);
+        for (int row : plan.addedRows) {
+            added.add(importedAccountTransactions.get(row));
+        }
+        List<AccountTransaction> result = new ArrayList<>(dataStoreAccountTransactions.size() + added.size());
+        result.addAll(dataStoreAccountTransactions);
+        result.addAll(added);
+        return new MergeResult<>(result, added, plan.newCount, plan.knownCount, plan.ambiguousCount);
+    }
+
+    /**
+     * Merges into a history sorted by date, and keeps it sorted. Bank exports only overlap the history at its end, so the start of the overlap is found
+     * by binary search on the earliest imported date, and only the history from there on is compared with the import. The added transactions are then
+     * merge-joined into that window. A history that is not sorted (as stored by earlier versions) is sorted first.
+     *
+     * @return The history with the added transactions, sorted by date. Transactions on the same date keep their order, with stored ones first.
+     */
+    public MergeResult<List<AccountTransaction>> mergeSorted(List<AccountTransaction> importedAccountTransactions, List<AccountTransaction> dataStoreAccountTransactions) {
+        return mergeSorted(importedAccountTransactions, dataStoreAccountTransactions, null);
+    }
+
+    /**
+     * Same as {@link #mergeSorted(List, List)}, with a Bloom filter of the fingerprints of the stored transactions. Imported transactions that the filter
+     * rules out are certainly new, and are added without being compared with the history.
+     *
+     * @param storedFingerprints Filter holding exactly the stored transactions, or null
+     */
+    public MergeResult<List<AccountTransaction>> mergeSorted(List<AccountTransaction> importedAccountTransactions, List<AccountTransaction> dataStoreAccountTransactions,
+            FingerprintBloomFilter storedFingerprints) {
+        List<AccountTransaction> history = dataStoreAccountTransactions;
+        if (!isSortedByDate(history)) {
+            LOGGER.info(String.format("Stored transactions are not sorted by date, sorting %d transactions", history.size()));
+            history = new ArrayList<>(history);
+            history.sort(BY_DATE);
+        }
+        if (importedAccountTransactions.isEmpty()) {
+            return new MergeResult<>(new ArrayList<>(history), new ArrayList<>(), 0, 0, 0);
+        }
+
+        // Only the imported transactions that may already be stored have to be compared with the history
+        boolean[] added = new boolean[importedAccountTransactions.size()];
+        List<AccountTransaction> candidates = new ArrayList<>();
+        int[] candidateRows = new int[importedAccountTransactions.size()];
+        for (int i = 0; i < importedAccountTransactions.size(); i++) {
+            AccountTransaction at = importedAccountTransactions.get(i);
+            if (storedFingerprints == null || storedFingerprints.mightContain(at)) {
+                candidateRows[candidates.size()] = i;
+                candidates.add(at);
+            } else {
+                added[i] = true;
+            }
+        }
+        int certainlyNew = importedAccountTransactions.size() - candidates.size();
+
+        Plan plan = new Plan();
+        plan.addedRows = new int[0];
+        if (!candidates.isEmpty()) {
+            AccountTransaction earliest = candidates.stream().min(BY_DATE).get();
+            List<AccountTransaction> window = history.subList(lowerBound(history, earliest), history.size());
+            LOGGER.debug(String.format("Comparing %d of %d imported transactions with the %d stored transactions from %s", candidates.size(),
+                    importedAccountTransactions.size(), window.size(), earliest.getDate()));
+            plan = plan(candidates.size(), i -> ImmutableAccountTransaction.of(candidates.get(i)), i -> epochDay(candidates.get(i)), window.size(),
+                    i -> ImmutableAccountTransaction.of(window.get(i)), i -> epochDay(window.get(i)));
+            for (int row : plan.addedRows) {
+                added[candidateRows[row]] = true;
+            }
+        }
+
+        List<AccountTransaction> addedAccountTransactions = new ArrayList<>(certainlyNew + plan.addedRows.length);
+        for (int i = 0; i < added.length; i++) {
+            if (added[i]) {
+                addedAccountTransactions.add(importedAccountTransactions.get(i));
+            }
+        }
+        addedAccountTransactions.sort(BY_DATE);
+
+        List<AccountTransaction> result = new ArrayList<>(history.size() + addedAccountTransactions.size());
+        int start = addedAccountTransactions.isEmpty() ? history.size() : lowerBound(history, addedAccountTransactions.get(0));
+        result.addAll(history.subList(0, start));
+        int i = start;
+        int j = 0;
+        while (i < history.size() || j < addedAccountTransactions.size()) {
+            if (j == addedAccountTransactions.size() || (i < history.size() && BY_DATE.compare(history.get(i), addedAccountTransactions.get(j)) <= 0)) {
+                result.add(history.get(i++));
+            } else {
+                result.add(addedAccountTransactions.get(j++));
+            }
+        }
+        return new MergeResult<>(result, addedAccountTransactions, plan.newCount + certainlyNew, plan.knownCount, plan.ambiguousCount);
+    }
+
+    /**
+     * Same as {@link #merge(List, List)}, but on TransactionTables. Only the rows that need hashing are materialized.
+     */
+    public MergeResult<TransactionTable> merge(TransactionTable importedAccountTransactions, TransactionTable dataStoreAccountTransactions) {
+        Plan plan = plan(importedAccountTransactions.size(), i -> ImmutableAccountTransaction.of(importedAccountTransactions.get(i)),
+                importedAccountTransactions::getEpochDay, dataStoreAccountTransactions.size(),
+                i -> ImmutableAccountTransaction.of(dataStoreAccountTransactions.get(i)), dataStoreAccountTransactions::getEpochDay);
+
+        TransactionTable added = new TransactionTable(plan.addedRows.length);
+        for (int row : plan.addedRows) {
+            added.add(importedAccountTransactions, row);
+        }
+        TransactionTable result = new TransactionTable(dataStoreAccountTransactions.size() + added.size());
+        for (int row = 0; row < dataStoreAccountTransactions.size(); row++) {
+            result.add(dataStoreAccountTransactions, row);
+        }
+        for (int row = 0; row < added.size(); row++) {
+            result.add(added, row);
+        }
+        return new MergeResult<>(result, added, plan.newCount, plan.knownCount, plan.ambiguousCount);
+    }
+
+    private static Plan plan(int importedSize, IntFunction<ImmutableAccountTransaction> importedKeys, IntUnaryOperator importedDays, int storedSize,
+            IntFunction<ImmutableAccountTransaction> storedKeys, IntUnaryOperator storedDays) {
+        // Count the occurrences of each imported transaction
+        ImmutableAccountTransaction[] keys = new ImmutableAccountTransaction[importedSize];
+        Map<ImmutableAccountTransaction, Occurrences> occurrences = new HashMap<>(2 * importedSize);
+        Set<Integer> days = new HashSet<>();
+        for (int i = 0; i < importedSize; i++) {
+            keys[i] = importedKeys.apply(i);
+            occurrences.computeIfAbsent(keys[i], k -> new Occurrences()).imported++;
+            days.add(importedDays.applyAsInt(i));
+        }
+
+        // Count how many of them are already stored. A stored transaction on a date not in the import can't match, so it is never hashed.
+        for (int i = 0; i < storedSize; i++) {
+            if (days.contains(storedDays.applyAsInt(i))) {
+                Occurrences o = occurrences.get(storedKeys.apply(i));
+                if (o != null) {
+                    o.stored++;
+                }
+            }
+        }
+
+        // In import order, the first occurrences of a transaction are the already stored ones, the rest are added
+        Plan plan = new Plan();
+        int[] addedRows = new int[importedSize];
+        int added = 0;
+        for (int i = 0; i < importedSize; i++) {
+            Occurrences o = occurrences.get(keys[i]);
+            if (o.seen++ < o.stored) {
+                plan.knownCount++;
+            } else {
+                if (o.stored == 0) {
+                    plan.newCount++;
+                } else {
+                    plan.ambiguousCount++;
+                }
+                addedRows[added++] = i;
+            }
+        }
+        plan.addedRows = Arrays.copyOf(addedRows, added);
+        return plan;
+    }
+
+    private static boolean isSortedByDate(List<AccountTransaction> accountTransactions) {
+        for (int i = 1; i < accountTransactions.size(); i++) {
+            if (BY_DATE.compare(accountTransactions.get(i - 1), accountTransactions.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the first transaction not before the given one, by date
+     */
+    private static int lowerBound(List<AccountTransaction> sorted, AccountTransaction key) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BY_DATE.compare(sorted.get(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int epochDay(AccountTransaction at) {
+        // Same as TransactionTable for a missing date
+        return at.getDate() == null ? Integer.MIN_VALUE : (int) at.getDate().toEpochDay();
+    }
+
+    private static class Occurrences {
+        private int imported;
+        private int stored;
+        private int seen;
+    }
+
+    private static class Plan {
+        private int[] addedRows;
+        private int newCount;
+        private int knownCount;
+        private int ambiguousCount;
+    }
+}
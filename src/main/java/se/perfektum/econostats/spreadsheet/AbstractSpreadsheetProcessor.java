@@ -0,0 +1,40 @@
+package se.perfektum.econostats.spreadsheet;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se.perfektum.econostats.aggregation.MonthlyAggregator;
+import se.perfektum.econostats.aggregation.YearAggregate;
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.matching.Classification;
+import se.perfektum.econostats.matching.PayeeMatcher;
+import se.perfektum.econostats.matching.TransactionClassifier;
+
+/**
+ * Base of the spreadsheet processors, turning AccountTransactions into yearly aggregates. Subclasses only differ in how the aggregates are written.
+ */
+public abstract class AbstractSpreadsheetProcessor implements SpreadsheetProcessor {
+    private final Logger LOGGER = LoggerFactory.getLogger(AbstractSpreadsheetProcessor.class);
+
+    private final MonthlyAggregator monthlyAggregator = new MonthlyAggregator();
+
+    /**
+     * Classifies the transactions and sums the matched ones per year, month and filter.
+     *
+     * @return one aggregate per year with matched transactions, in order of year
+     */
+    protected List<YearAggregate> aggregate(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) {
+        // The shared matcher, which is kept with its cache of matches per header until the filters change
+        Classification classification = new TransactionClassifier(PayeeMatcher.of(payeeFilters)).classify(accountTransactions);
+        LOGGER.info(String.format("Creating spreadsheet from %d transactions: %d matched, %d excluded, %d unmatched", accountTransactions.size(),
+                classification.getMatched().size(), classification.getExcluded().size(), classification.getUnmatched().size()));
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Transactions not matched by any payee filter: %s", classification.getUnmatched()));
+        }
+
+        return monthlyAggregator.aggregate(classification);
+    }
+}
@@ -0,0 +1,94 @@
+package se.perfektum.econostats.spreadsheet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.odftoolkit.odfdom.dom.OdfContentDom;
+import org.odftoolkit.odfdom.dom.OdfDocumentNamespace;
+import org.odftoolkit.odfdom.dom.style.OdfStyleFamily;
+import org.odftoolkit.odfdom.incubator.doc.office.OdfOfficeAutomaticStyles;
+import org.odftoolkit.odfdom.incubator.doc.style.OdfStyle;
+import org.odftoolkit.odfdom.type.Color;
+import org.odftoolkit.simple.Document;
+import org.odftoolkit.simple.style.Font;
+import org.odftoolkit.simple.style.StyleTypeDefinitions;
+import org.odftoolkit.simple.table.Cell;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Registry of the cell styles of one spreadsheet document. Setting the font, background color and alignment of a cell one property at a time gives the
+ * cell an automatic style of its own, so each distinct combination is instead set up once, on the first cell using it, and the style of that cell is
+ * then shared by name with all other cells using the same combination.
+ * <p>
+ * Not thread safe, and only valid for the document it was used with.
+ */
+class CellStyles {
+    private final Map<String, String> styleNames = new HashMap<>();
+
+    /**
+     * Styles a cell. The style of a cell must not be changed afterwards, since it may be shared.
+     */
+    void apply(Cell cell, boolean bold, Color color, int fontSize, StyleTypeDefinitions.HorizontalAlignmentType alignmentType) {
+        String key = String.format("%b|%s|%d|%s", bold, Objects.toString(color, ""), fontSize, alignmentType);
+        String styleName = styleNames.get(key);
+        if (styleName != null) {
+            cell.setCellStyleName(styleName);
+            return;
+        }
+
+        cell.setHorizontalAlignment(alignmentType);
+        cell.setCellBackgroundColor(color);
+        if (bold) {
+            cell.setFont(new Font("", StyleTypeDefinitions.FontStyle.BOLD, fontSize));
+        }
+        styleName = cell.getCellStyleName();
+        if (styleName != null && !styleName.isEmpty()) {
+            styleNames.put(key, styleName);
+        }
+    }
+
+    /**
+     * @return the number of distinct styles set up so far
+     */
+    int size() {
+        return styleNames.size();
+    }
+
+    /**
+     * Removes the automatic cell styles that no cell uses anymore, eg. the styles of a sheet that has been replaced. A registry does not know the styles
+     * of cells styled before it, so their styles are left behind when the cells are removed.
+     *
+     * @return the number of styles removed
+     */
+    static int removeUnused(Document document) throws Exception {
+        OdfContentDom content = document.getContentDom();
+        OdfOfficeAutomaticStyles automaticStyles = content.getAutomaticStyles();
+        if (automaticStyles == null) {
+            return 0;
+        }
+
+        String table = OdfDocumentNamespace.TABLE.getUri();
+        Set<String> used = new HashSet<>();
+        NodeList elements = content.getElementsByTagNameNS(table, "*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            used.add(element.getAttributeNS(table, "style-name"));
+            used.add(element.getAttributeNS(table, "default-cell-style-name"));
+        }
+
+        List<OdfStyle> unused = new ArrayList<>();
+        for (OdfStyle style : automaticStyles.getStylesForFamily(OdfStyleFamily.TableCell)) {
+            if (!used.contains(style.getStyleNameAttribute())) {
+                unused.add(style);
+            }
+        }
+        unused.forEach(automaticStyles::removeChild);
+        return unused.size();
+    }
+}
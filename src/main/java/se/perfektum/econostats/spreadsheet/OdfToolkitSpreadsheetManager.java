@@ -1,16 +1,19 @@
 package se.perfektum.econostats.spreadsheet;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.odftoolkit.simple.SpreadsheetDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import se.perfektum.econostats.aggregation.RollupStore;
 import se.perfektum.econostats.domain.AccountTransaction;
 import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.merge.FingerprintBloomFilter;
+import se.perfektum.econostats.merge.MergeResult;
+import se.perfektum.econostats.merge.TransactionMerger;
 import se.perfektum.econostats.utils.JsonUtils;
 
 /**
@@ -20,6 +23,7 @@ public class OdfToolkitSpreadsheetManager implements SpreadsheetManager {
     final Logger LOGGER = LoggerFactory.getLogger(OdfToolkitSpreadsheetManager.class);
 
     private SpreadsheetProcessor spreadsheetProcessor;
+    private final TransactionMerger transactionMerger = new TransactionMerger();
 
     public OdfToolkitSpreadsheetManager(SpreadsheetProcessor spreadsheetProcessor) {
         this.spreadsheetProcessor = spreadsheetProcessor;
@@ -34,26 +38,77 @@ public class OdfToolkitSpreadsheetManager implements SpreadsheetManager {
         return file;
     }
 
+    @Override
+    public File createNewSpreadsheet(String filePath, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        SpreadsheetDocument doc = spreadsheetProcessor.createSpreadsheet(rollups, payeeFilters);
+
+        final File file = new File(filePath);
+        doc.save(file);
+        return file;
+    }
+
+    @Override
+    public void writeSpreadsheet(OutputStream out, List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) throws Exception {
+        spreadsheetProcessor.writeSpreadsheet(accountTransactions, payeeFilters, out);
+    }
+
+    @Override
+    public void writeSpreadsheet(OutputStream out, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        spreadsheetProcessor.writeSpreadsheet(rollups, payeeFilters, out);
+    }
+
+    @Override
+    public void updateSpreadsheet(OutputStream out, File previousFile, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        SpreadsheetDocument previous = loadSpreadsheet(previousFile);
+        if (previous == null) {
+            writeSpreadsheet(out, rollups, payeeFilters);
+            return;
+        }
+        spreadsheetProcessor.updateSpreadsheet(previous, rollups, payeeFilters).save(out);
+    }
+
+    /**
+     * @return the spreadsheet in file, or null if there is no file or it can't be read
+     */
+    private SpreadsheetDocument loadSpreadsheet(File file) {
+        if (!file.isFile()) {
+            LOGGER.debug(String.format("No previous spreadsheet '%s', creating a new one.", file));
+            return null;
+        }
+        try {
+            return SpreadsheetDocument.loadDocument(file);
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Could not read previous spreadsheet '%s', creating a new one", file), e);
+            return null;
+        }
+    }
+
     @Override
     public List<AccountTransaction> mergeAccountTransactions(List<AccountTransaction> importedAccountTransactions, String transactions) {
+        return mergeAccountTransactions(importedAccountTransactions, transactions, null).getTransactions();
+    }
+
+    @Override
+    public MergeResult<List<AccountTransaction>> mergeAccountTransactions(List<AccountTransaction> importedAccountTransactions, String transactions,
+            FingerprintBloomFilter storedFingerprints) {
         List<AccountTransaction> dataStoreAccountTransactions = JsonUtils.getJsonElement(AccountTransaction.class, transactions);
 
-        // Hard to solve!
-        // Eg. If we have three new transactions, where two are identical (1. deposit
-        // 10, 2. withdraw 10, 3. deposit 10), one of the deposits
-        // will disappear due to distinction. For now I'm just throwing out a warning.
-        // Not sure how to solve this, as there are no IDs on transactions. This
-        // scenario is likely, and the two deposits are exactly the same.
+        // Identical transactions (eg. two deposits of the same amount on the same day) can't be told apart, as there are no ids on transactions. The
+        // merger counts them instead, so genuine duplicates are kept. The stored transactions are kept sorted by date, so only the part of them that the
+        // import overlaps has to be compared.
+        MergeResult<List<AccountTransaction>> result = transactionMerger.mergeSorted(importedAccountTransactions, dataStoreAccountTransactions, storedFingerprints);
+        if (storedFingerprints != null) {
+            result.getAddedTransactions().forEach(storedFingerprints::put);
+        }
+        LOGGER.info(String.format("Merged %d imported transactions: %d new, %d already known, %d ambiguous", importedAccountTransactions.size(), result.getNewCount(),
+                result.getKnownCount(), result.getAmbiguousCount()));
         // TODO: Should probably show a warning message (Continue Yes/No) here when GUI
         // is implemented
-        if (importedAccountTransactions.size() != importedAccountTransactions.stream().distinct().collect(Collectors.toList()).size()) {
-            LOGGER.warn("Imported transactions contains one or more duplicate transactions. This will result in loss of as least one transaction (by distinction)! "
-                    + "This may occur if there are eg. two deposits and one withdrawal with the exact same amount on the same day. "
-                    + "BE ADVISED that this might yield erroneous results! Please check your imported file!");
+        if (result.getAmbiguousCount() > 0) {
+            LOGGER.warn(String.format("%d imported transactions are identical to stored transactions, but occur more times in the imported file than in the stored ones. "
+                    + "They have been added as new transactions. BE ADVISED that this might yield erroneous results! Please check your imported file!", result.getAmbiguousCount()));
         }
 
-        List<AccountTransaction> result = Stream.concat(importedAccountTransactions.stream(), dataStoreAccountTransactions.stream()).distinct().collect(Collectors.toList());
-
         return result;
     }
 }
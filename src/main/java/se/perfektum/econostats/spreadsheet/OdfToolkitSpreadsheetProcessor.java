@@ -2,44 +2,31 @@ package se.perfektum.econostats.spreadsheet;
 
 import org.odftoolkit.odfdom.type.Color;
 import org.odftoolkit.simple.SpreadsheetDocument;
-import org.odftoolkit.simple.style.Font;
 import org.odftoolkit.simple.style.StyleTypeDefinitions;
 import org.odftoolkit.simple.table.Cell;
 import org.odftoolkit.simple.table.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.perfektum.econostats.aggregation.RollupStore;
+import se.perfektum.econostats.aggregation.YearAggregate;
 import se.perfektum.econostats.domain.AccountTransaction;
 import se.perfektum.econostats.domain.PayeeFilter;
 
-import java.math.BigDecimal;
 import java.time.Month;
-import java.time.Year;
-import java.time.YearMonth;
-import java.time.format.TextStyle;
 import java.util.*;
-import java.util.stream.Collectors;
+
+import static se.perfektum.econostats.spreadsheet.SheetLayout.*;
 
 /**
  * Gets AccountTransactions from storage Performs various calculations on transaction values Creates a spreadsheet on monthly payments
  */
-public class OdfToolkitSpreadsheetProcessor implements SpreadsheetProcessor {
-    final Logger LOGGER = LoggerFactory.getLogger(OdfToolkitSpreadsheetProcessor.class);
-    private static final int HEADER_DEFAULT_SIZE = 9;
-    private static final int COLUMN_WIDTH_MODIFIER = 12;
-    private static final int ROW_COUNT = 14;
-    private static final int COLUMN_OFFSET = 1;
-    private static final int ROUNDING = 0;
-    private static final String MONTH = "Month";
-    private static final String TOTAL = "Total";
-    private static final String AVERAGE = "Average";
-    private static final String GRAND_TOTAL = "Grand Total";
-    private static final Color GREY = new Color(200, 200, 200);
-    private static final Color PASTEL_PEACH = new Color(255, 225, 200);
-    private static final Color PASTEL_PINK = new Color(250, 210, 255);
-    private static final Color PASTEL_PURPLE = new Color(220, 210, 255);
-
-    // TODO: Refactor out all parts that processes AccountTransactions and
-    // PayeeFilters, as these don't really qualify as OdfToolkit specifics
+public class OdfToolkitSpreadsheetProcessor extends AbstractSpreadsheetProcessor {
+    private final Logger LOGGER = LoggerFactory.getLogger(OdfToolkitSpreadsheetProcessor.class);
+
+    // Name of the metadata holding the digest of the aggregate a sheet was created from, followed by the year
+    private static final String SHEET_DIGEST = "econostats.sheetDigest.";
+    private static final String VALUE_TYPE_STRING = "string";
+
     // TODO: Create an "anchor" or similar, to be able to move the whole construct
     // anywhere in the sheet.
     // TODO: Fix widths (calculation of this is pretty bad as it is)
@@ -49,193 +36,176 @@ public class OdfToolkitSpreadsheetProcessor implements SpreadsheetProcessor {
     // year. Can this be changed (to the latest year)?
     @Override
     public SpreadsheetDocument createSpreadsheet(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) throws Exception {
-        List<AccountTransaction> excludedPayees = excludedPayees(accountTransactions, payeeFilters);
+        return createSpreadsheet(aggregate(accountTransactions, payeeFilters));
+    }
+
+    @Override
+    public SpreadsheetDocument createSpreadsheet(RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        return createSpreadsheet(rollups.toAggregates(payeeFilters));
+    }
 
-        Map<Year, List<AccountTransaction>> transactionsByYear = excludedPayees.stream().collect(Collectors.groupingBy(d -> Year.of(d.getDate().getYear()), TreeMap::new, Collectors.toList()));
+    /**
+     * Replaces the sheets of the years whose aggregates differ from the ones the sheets were created from, and removes the sheets of years that no
+     * longer have any matched transactions. All other sheets are left untouched. The digest of the aggregate of each sheet is kept in the metadata of
+     * the document, so a document without digests, eg. one not created by this processor, has all of its sheets replaced.
+     */
+    @Override
+    public SpreadsheetDocument updateSpreadsheet(SpreadsheetDocument previous, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        List<YearAggregate> aggregates = rollups.toAggregates(payeeFilters);
+        Set<String> years = new HashSet<>();
+        aggregates.forEach(aggregate -> years.add(aggregate.getYear().toString()));
+        for (int i = previous.getSheetCount() - 1; i >= 0; i--) {
+            if (!years.contains(previous.getSheetByIndex(i).getTableName())) {
+                previous.removeSheet(i);
+            }
+        }
+        // Null, rather than empty, when there is no user defined metadata
+        List<String> metadataNames = previous.getOfficeMetadata().getUserDefinedDataNames();
+        if (metadataNames != null) {
+            for (String name : new ArrayList<>(metadataNames)) {
+                if (name.startsWith(SHEET_DIGEST) && !years.contains(name.substring(SHEET_DIGEST.length()))) {
+                    previous.getOfficeMetadata().removeUserDefinedDataByName(name);
+                }
+            }
+        }
 
+        // Sheets are kept in order of year, so the sheets before the i:th are always the ones of the years before it
+        int replaced = 0;
+        CellStyles styles = new CellStyles();
+        for (int i = 0; i < aggregates.size(); i++) {
+            YearAggregate aggregate = aggregates.get(i);
+            String year = aggregate.getYear().toString();
+            String digest = SpreadsheetDigest.of(aggregate).toString();
+            if (i < previous.getSheetCount() && year.equals(previous.getSheetByIndex(i).getTableName())
+                    && digest.equals(previous.getOfficeMetadata().getUserDefinedDataValue(SHEET_DIGEST + year))) {
+                continue;
+            }
+            for (int j = i; j < previous.getSheetCount(); j++) {
+                if (year.equals(previous.getSheetByIndex(j).getTableName())) {
+                    previous.removeSheet(j);
+                    break;
+                }
+            }
+            // Inserting can't append a sheet after the last one
+            Table sheet;
+            if (i < previous.getSheetCount()) {
+                sheet = previous.insertSheet(i);
+                sheet.setTableName(year);
+            } else {
+                sheet = previous.appendSheet(year);
+            }
+            createSheet(styles, aggregate, sheet);
+            previous.getOfficeMetadata().setUserDefinedData(SHEET_DIGEST + year, VALUE_TYPE_STRING, digest);
+            replaced++;
+        }
+        if (replaced > 0) {
+            CellStyles.removeUnused(previous);
+        }
+        LOGGER.info(String.format("Updated spreadsheet, replaced %d of %d sheets", replaced, aggregates.size()));
+        return previous;
+    }
+
+    private SpreadsheetDocument createSpreadsheet(Collection<YearAggregate> aggregates) throws Exception {
         int i = 0;
         SpreadsheetDocument doc = SpreadsheetDocument.newSpreadsheetDocument();
         doc.removeSheet(0);
-        for (Year year : transactionsByYear.keySet()) {
-            List<PayeeFilter> adaptedFilters = adaptPayeeFilters(transactionsByYear.get(year), payeeFilters);
-            if (adaptedFilters.size() > 0) {
-
-                doc.appendSheet(year.toString());
-                Table sheet = doc.getSheetByIndex(i);
-
-                Collections.sort(adaptedFilters, Comparator.comparing(PayeeFilter::getAlias));
-
-                setHeaders(adaptedFilters, sheet);
+        CellStyles styles = new CellStyles();
+        for (YearAggregate aggregate : aggregates) {
+            doc.appendSheet(aggregate.getYear().toString());
+            Table sheet = doc.getSheetByIndex(i);
 
-                processPayees(transactionsByYear.get(year), adaptedFilters, sheet);
+            createSheet(styles, aggregate, sheet);
+            doc.getOfficeMetadata().setUserDefinedData(SHEET_DIGEST + aggregate.getYear(), VALUE_TYPE_STRING, SpreadsheetDigest.of(aggregate).toString());
 
-                calcMonthlyTotals(adaptedFilters, sheet);
-
-                // Calculate total average monthly
-                calcTotalsPerPayee(adaptedFilters, sheet, 13, "=ROUND(AVERAGE(");
-
-                // Calculate grand total
-                calcTotalsPerPayee(adaptedFilters, sheet, 14, "=ROUND(SUM(");
-
-                i++;
-            }
+            i++;
         }
         return doc;
     }
 
-    private List<AccountTransaction> excludedPayees(List<AccountTransaction> transactions, List<PayeeFilter> filters) {
-        for (PayeeFilter filter : filters) {
-            if (filter.getExcludedPayees() != null) {
-                for (String exclude : filter.getExcludedPayees()) {
-                    transactions.removeIf(t -> t.getHeader().equals(exclude));
-                    LOGGER.info(String.format("Removing transaction '%s' before creating spreadsheet", exclude));
-                }
-            }
-        }
-        return transactions;
-    }
+    private void createSheet(CellStyles styles, YearAggregate aggregate, Table sheet) {
+        List<PayeeFilter> adaptedFilters = aggregate.getPayeeFilters();
 
-    private List<PayeeFilter> adaptPayeeFilters(List<AccountTransaction> transactions, List<PayeeFilter> filters) {
+        setHeaders(styles, adaptedFilters, sheet);
 
-        Set<String> trans = transactions.stream().map(AccountTransaction::getHeader).collect(Collectors.toSet());
+        processPayees(styles, aggregate, sheet);
 
-        Set<PayeeFilter> adaptedFilters = new HashSet<>();
-        for (PayeeFilter filter : filters) {
-            for (String payee : filter.getPayees()) {
-                if (trans.stream().anyMatch(t -> t.toLowerCase().contains(payee.toLowerCase()))) {
-                    adaptedFilters.add(filter);
-                    break;
-                }
-            }
-        }
-        return new ArrayList<>(adaptedFilters);
+        calcMonthlyTotals(styles, adaptedFilters, sheet);
+
+        // Calculate total average monthly
+        calcTotalsPerPayee(styles, adaptedFilters, sheet, AVERAGE_ROW, getAverageFormula(getTotalColumn(adaptedFilters.size())));
+
+        // Calculate grand total
+        calcTotalsPerPayee(styles, adaptedFilters, sheet, GRAND_TOTAL_ROW, getSumFormula(getTotalColumn(adaptedFilters.size())));
     }
 
-    private void processPayees(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters, Table sheet) {
-        List<AccountTransaction> added = new ArrayList<>();
+    private void processPayees(CellStyles styles, YearAggregate aggregate, Table sheet) {
+        List<PayeeFilter> payeeFilters = aggregate.getPayeeFilters();
         for (int i = 0; i < payeeFilters.size(); i++) {
-            Map<YearMonth, BigDecimal> amounts = new HashMap<>();
-
-            // Accumulate amounts for each filter, grouped by year and month
-            for (AccountTransaction transaction : accountTransactions) {
-                if (payeeFilters.get(i).getPayees().stream().map(d -> d.toLowerCase()).anyMatch(transaction.getHeader().toLowerCase()::contains)) {
-                    added.add(transaction);
-                    YearMonth ym = YearMonth.of(transaction.getDate().getYear(), transaction.getDate().getMonthValue());
-                    // TODO: Why ROUND here? Try removing it!
-                    amounts.merge(ym, transaction.getAmount().abs().setScale(0, BigDecimal.ROUND_DOWN), BigDecimal::add);
-                }
-            }
-
             // Set payee headers
-            // Calculate payee invoices
-            for (Map.Entry<YearMonth, BigDecimal> entry : amounts.entrySet()) {
+            if (aggregate.getCount(i) > 0) {
                 String alias = payeeFilters.get(i).getAlias();
-                setCellValues(sheet.getCellByPosition(i + COLUMN_OFFSET, 0), alias, true, PASTEL_PEACH, HEADER_DEFAULT_SIZE, alias, StyleTypeDefinitions.HorizontalAlignmentType.DEFAULT);
-                sheet.getCellByPosition(i + COLUMN_OFFSET, entry.getKey().getMonth().getValue()).setDoubleValue((double) Math.abs(entry.getValue().doubleValue()));
+                setCellValues(styles, sheet.getCellByPosition(i + COLUMN_OFFSET, 0), alias, true, PASTEL_PEACH, HEADER_DEFAULT_SIZE, alias, StyleTypeDefinitions.HorizontalAlignmentType.DEFAULT);
+            }
+            // Calculate payee invoices, leaving months without transactions blank
+            for (Month month : Month.values()) {
+                if (aggregate.getCount(month, i) > 0) {
+                    sheet.getCellByPosition(i + COLUMN_OFFSET, month.getValue()).setDoubleValue(aggregate.getTotal(month, i) / (double) MINOR_UNITS);
+                }
             }
 
             // Calculate average per payee
-            String odfColName = getColumnName(i + COLUMN_OFFSET + 1);
-            setCellValues(sheet.getCellByPosition(i + COLUMN_OFFSET, ROW_COUNT - 1), "", true, PASTEL_PINK);
-            sheet.getCellByPosition(i + COLUMN_OFFSET, ROW_COUNT - 1).setFormula(String.format("=ROUND(AVERAGE(%s2:%s13);%s)", odfColName, odfColName, ROUNDING));
+            setCellValues(styles, sheet.getCellByPosition(i + COLUMN_OFFSET, AVERAGE_ROW), "", true, PASTEL_PINK);
+            sheet.getCellByPosition(i + COLUMN_OFFSET, AVERAGE_ROW).setFormula(getAverageFormula(i + COLUMN_OFFSET));
             // Calculate totals per payee
-            setCellValues(sheet.getCellByPosition(i + COLUMN_OFFSET, ROW_COUNT), "", true, PASTEL_PURPLE);
-            sheet.getCellByPosition(i + COLUMN_OFFSET, ROW_COUNT).setFormula(String.format("=ROUND(SUM(%s2:%s13);%s)", odfColName, odfColName, ROUNDING));
+            setCellValues(styles, sheet.getCellByPosition(i + COLUMN_OFFSET, GRAND_TOTAL_ROW), "", true, PASTEL_PURPLE);
+            sheet.getCellByPosition(i + COLUMN_OFFSET, GRAND_TOTAL_ROW).setFormula(getSumFormula(i + COLUMN_OFFSET));
         }
-        System.out.println("Removing stuff....");
-        accountTransactions.removeAll(added);
-        System.out.println(accountTransactions.stream().map(d -> d.toString()).collect(Collectors.toList()));
-        System.out.println("Done!");
     }
 
-    private void setHeaders(List<PayeeFilter> payeeFilters, Table sheet) {
-        setCellValues(sheet.getCellByPosition(0, 0), MONTH, true, PASTEL_PEACH, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.CENTER);
-        setCellValues(sheet.getCellByPosition(payeeFilters.size() + COLUMN_OFFSET, 0), TOTAL, true, GREY, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, ROW_COUNT - 1), AVERAGE, true, PASTEL_PINK, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, ROW_COUNT), GRAND_TOTAL, true, PASTEL_PURPLE, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        createMonthColumn(sheet);
+    private void setHeaders(CellStyles styles, List<PayeeFilter> payeeFilters, Table sheet) {
+        setCellValues(styles, sheet.getCellByPosition(0, 0), MONTH, true, PASTEL_PEACH, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.CENTER);
+        setCellValues(styles, sheet.getCellByPosition(getTotalColumn(payeeFilters.size()), 0), TOTAL, true, GREY, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
+        setCellValues(styles, sheet.getCellByPosition(0, AVERAGE_ROW), AVERAGE, true, PASTEL_PINK, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
+        setCellValues(styles, sheet.getCellByPosition(0, GRAND_TOTAL_ROW), GRAND_TOTAL, true, PASTEL_PURPLE, HEADER_DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
+        createMonthColumn(styles, sheet);
     }
 
-    private void setCellValues(Cell cell, String value, boolean bold) {
-        setCellValues(cell, value, bold, null);
+    private void setCellValues(CellStyles styles, Cell cell, String value, boolean bold) {
+        setCellValues(styles, cell, value, bold, null);
     }
 
-    private void setCellValues(Cell cell, String value, boolean bold, Color color) {
-        setCellValues(cell, value, bold, color, 10, StyleTypeDefinitions.HorizontalAlignmentType.DEFAULT);
+    private void setCellValues(CellStyles styles, Cell cell, String value, boolean bold, Color color) {
+        setCellValues(styles, cell, value, bold, color, DEFAULT_SIZE, StyleTypeDefinitions.HorizontalAlignmentType.DEFAULT);
     }
 
-    private void setCellValues(Cell cell, String value, boolean bold, Color color, int fontSize, StyleTypeDefinitions.HorizontalAlignmentType alignmentType) {
-        setCellValues(cell, value, bold, color, fontSize, null, alignmentType);
+    private void setCellValues(CellStyles styles, Cell cell, String value, boolean bold, Color color, int fontSize, StyleTypeDefinitions.HorizontalAlignmentType alignmentType) {
+        setCellValues(styles, cell, value, bold, color, fontSize, null, alignmentType);
     }
 
-    private void setCellValues(Cell cell, String value, boolean bold, Color color, int fontSize, String columnAlias, StyleTypeDefinitions.HorizontalAlignmentType alignmentType) {
+    private void setCellValues(CellStyles styles, Cell cell, String value, boolean bold, Color color, int fontSize, String columnAlias, StyleTypeDefinitions.HorizontalAlignmentType alignmentType) {
         if (columnAlias != null) {
-            List<String> parts = Arrays.asList(columnAlias.split("\\n"));
-            cell.getTableColumn().setWidth(parts.stream().max(Comparator.comparingInt(String::length)).get().length() + COLUMN_WIDTH_MODIFIER);
+            cell.getTableColumn().setWidth(getColumnWidth(columnAlias));
         }
-        cell.setHorizontalAlignment(alignmentType);
         cell.setStringValue(value);
-        cell.setCellBackgroundColor(color);
-        if (bold) {
-            cell.setFont(new Font("", StyleTypeDefinitions.FontStyle.BOLD, fontSize));
-        }
+        styles.apply(cell, bold, color, fontSize, alignmentType);
     }
 
-    private void calcTotalsPerPayee(List<PayeeFilter> payeeFilters, Table sheet, int rowIndex, String function) {
-        setCellValues(sheet.getCellByPosition(payeeFilters.size() + COLUMN_OFFSET, rowIndex), "", true, GREY);
-        sheet.getCellByPosition(payeeFilters.size() + COLUMN_OFFSET, rowIndex)
-                .setFormula(String.format(function + "%s2:%s13);%s)", getColumnName(payeeFilters.size() + COLUMN_OFFSET + 1), getColumnName(payeeFilters.size() + COLUMN_OFFSET + 1), ROUNDING));
+    private void calcTotalsPerPayee(CellStyles styles, List<PayeeFilter> payeeFilters, Table sheet, int rowIndex, String formula) {
+        setCellValues(styles, sheet.getCellByPosition(getTotalColumn(payeeFilters.size()), rowIndex), "", true, GREY);
+        sheet.getCellByPosition(getTotalColumn(payeeFilters.size()), rowIndex).setFormula(formula);
     }
 
-    private void calcMonthlyTotals(List<PayeeFilter> payeeFilters, Table sheet) {
-        for (int i = 2; i < ROW_COUNT; i++) {
-            setCellValues(sheet.getCellByPosition(payeeFilters.size() + COLUMN_OFFSET, i - 1), "", true);
-            sheet.getCellByPosition(payeeFilters.size() + COLUMN_OFFSET, i - 1)
-                    .setFormula(String.format("=IF(COUNTBLANK(B%s:%s)=%d;\"\";ROUND(SUM(B%s:%s);%d))", i, getColumnName(payeeFilters.size() + COLUMN_OFFSET) + i, payeeFilters.size(), i,
-                            getColumnName(payeeFilters.size() + COLUMN_OFFSET) + i, ROUNDING));
+    private void calcMonthlyTotals(CellStyles styles, List<PayeeFilter> payeeFilters, Table sheet) {
+        for (Month month : Month.values()) {
+            setCellValues(styles, sheet.getCellByPosition(getTotalColumn(payeeFilters.size()), month.getValue()), "", true);
+            sheet.getCellByPosition(getTotalColumn(payeeFilters.size()), month.getValue()).setFormula(getMonthlyTotalFormula(month.getValue(), payeeFilters.size()));
         }
     }
 
-    private void createMonthColumn(Table sheet) {
-        setCellValues(sheet.getCellByPosition(0, 1), Month.JANUARY.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 2), Month.FEBRUARY.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 3), Month.MARCH.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 4), Month.APRIL.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 5), Month.MAY.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 6), Month.JUNE.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 7), Month.JULY.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 8), Month.AUGUST.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 9), Month.SEPTEMBER.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 10), Month.OCTOBER.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 11), Month.NOVEMBER.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-        setCellValues(sheet.getCellByPosition(0, 12), Month.DECEMBER.getDisplayName(TextStyle.SHORT, Locale.ENGLISH), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
-                StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
-    }
-
-    // TODO: Should be a static class in a Spreadsheet utility class!
-    private String getColumnName(int index) {
-        String[] result = new String[index];
-        String colName;
-        for (int i = 0; i < index; i++) {
-            char c = (char) ('A' + (i % 26));
-            colName = c + "";
-            if (i > 25) {
-                colName = result[(i / 26) - 1] + "" + c;
-            }
-            result[i] = colName;
+    private void createMonthColumn(CellStyles styles, Table sheet) {
+        for (Month month : Month.values()) {
+            setCellValues(styles, sheet.getCellByPosition(0, month.getValue()), getMonthName(month), true, PASTEL_PEACH, HEADER_DEFAULT_SIZE,
+                    StyleTypeDefinitions.HorizontalAlignmentType.RIGHT);
         }
-        return result[result.length - 1];
     }
-
 }
@@ -0,0 +1,100 @@
+package se.perfektum.econostats.spreadsheet;
+
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+import org.odftoolkit.odfdom.type.Color;
+
+/**
+ * The layout of a yearly sheet, shared by the spreadsheet processors so they all produce the same sheets.
+ * <p>
+ * Row 0 holds the headers, rows 1-12 the months, followed by the average and grand total rows. Column 0 holds the row headers, followed by one column
+ * per filter and the total column.
+ */
+final class SheetLayout {
+    static final int HEADER_DEFAULT_SIZE = 9;
+    static final int DEFAULT_SIZE = 10;
+    static final int ROW_COUNT = 14;
+    static final int AVERAGE_ROW = ROW_COUNT - 1;
+    static final int GRAND_TOTAL_ROW = ROW_COUNT;
+    static final int COLUMN_OFFSET = 1;
+    static final int MINOR_UNITS = 100;
+    static final String MONTH = "Month";
+    static final String TOTAL = "Total";
+    static final String AVERAGE = "Average";
+    static final String GRAND_TOTAL = "Grand Total";
+    static final Color GREY = new Color(200, 200, 200);
+    static final Color PASTEL_PEACH = new Color(255, 225, 200);
+    static final Color PASTEL_PINK = new Color(250, 210, 255);
+    static final Color PASTEL_PURPLE = new Color(220, 210, 255);
+
+    private static final int COLUMN_WIDTH_MODIFIER = 12;
+    private static final int ROUNDING = 0;
+
+    private SheetLayout() {
+    }
+
+    /**
+     * @return the index of the total column of a sheet with the given number of filters
+     */
+    static int getTotalColumn(int filterCount) {
+        return filterCount + COLUMN_OFFSET;
+    }
+
+    /**
+     * @return the width in millimeters of a filter column, fitting the longest line of its alias
+     */
+    static int getColumnWidth(String alias) {
+        return Arrays.stream(alias.split("\\n")).max(Comparator.comparingInt(String::length)).get().length() + COLUMN_WIDTH_MODIFIER;
+    }
+
+    static String getMonthName(Month month) {
+        return month.getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+    }
+
+    /**
+     * @return the formula of the average of the months in a column
+     */
+    static String getAverageFormula(int column) {
+        String odfColName = getColumnName(column + 1);
+        return String.format("=ROUND(AVERAGE(%s2:%s13);%s)", odfColName, odfColName, ROUNDING);
+    }
+
+    /**
+     * @return the formula of the sum of the months in a column
+     */
+    static String getSumFormula(int column) {
+        String odfColName = getColumnName(column + 1);
+        return String.format("=ROUND(SUM(%s2:%s13);%s)", odfColName, odfColName, ROUNDING);
+    }
+
+    /**
+     * @return the formula of the total of all filters in a month row, left blank if no filter has a value that month
+     */
+    static String getMonthlyTotalFormula(int row, int filterCount) {
+        int i = row + 1;
+        String lastColName = getColumnName(filterCount + COLUMN_OFFSET);
+        return String.format("=IF(COUNTBLANK(B%s:%s)=%d;\"\";ROUND(SUM(B%s:%s);%d))", i, lastColName + i, filterCount, i, lastColName + i, ROUNDING);
+    }
+
+    /**
+     * @param index 1-based column index
+     * @return the column name, eg. "A" for 1 and "AA" for 27
+     */
+    static String getColumnName(int index) {
+        String[] result = new String[index];
+        String colName;
+        for (int i = 0; i < index; i++) {
+            char c = (char) ('A' + (i % 26));
+            colName = c + "";
+            if (i > 25) {
+                colName = result[(i / 26) - 1] + "" + c;
+            }
+            result[i] = colName;
+        }
+        return result[result.length - 1];
+    }
+}
@@ -0,0 +1,198 @@
+package se.perfektum.econostats.spreadsheet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.List;
+
+import se.perfektum.econostats.aggregation.YearAggregate;
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.ImmutableAccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+/**
+ * SHA-256 digest of what a spreadsheet is created from, the stored transactions and the active PayeeFilters. Persisted next to the spreadsheet, so it
+ * is only created and uploaded again when something it is created from has changed.
+ * <p>
+ * Transactions are digested by their fingerprints, so the stamps, which are not part of the spreadsheet, are left out. The format version is digested
+ * too, and must be increased whenever the layout of the spreadsheet changes, so spreadsheets of the old layout are not kept.
+ * <p>
+ * The sheet of a year is only created from the aggregate of the year, so a digest of the aggregate tells whether the sheet has to be created again.
+ */
+public final class SpreadsheetDigest {
+    private static final int FORMAT_VERSION = 1;
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int HEX_LENGTH = 64;
+
+    // The digest is all that is wanted, the digested bytes are thrown away
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final byte[] digest;
+
+    private SpreadsheetDigest(byte[] digest) {
+        this.digest = digest;
+    }
+
+    public static SpreadsheetDigest of(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) {
+        MessageDigest messageDigest = newMessageDigest();
+        try (DataOutputStream out = newDigestStream(messageDigest)) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(payeeFilters.size());
+            for (PayeeFilter filter : payeeFilters) {
+                writeString(out, filter.getAlias());
+                out.writeBoolean(Boolean.TRUE.equals(filter.isActive()));
+                writeStrings(out, filter.getPayees());
+                writeStrings(out, filter.getExcludedPayees());
+            }
+            out.writeInt(accountTransactions.size());
+            for (AccountTransaction at : accountTransactions) {
+                out.writeLong(ImmutableAccountTransaction.fingerprint(at));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SpreadsheetDigest(messageDigest.digest());
+    }
+
+    /**
+     * @return the digest of the sheet of a year
+     */
+    public static SpreadsheetDigest of(YearAggregate aggregate) {
+        MessageDigest messageDigest = newMessageDigest();
+        try (DataOutputStream out = newDigestStream(messageDigest)) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(aggregate.getYear().getValue());
+            out.writeInt(aggregate.getColumnCount());
+            for (int column = 0; column < aggregate.getColumnCount(); column++) {
+                writeString(out, aggregate.getPayeeFilters().get(column).getAlias());
+                for (Month month : Month.values()) {
+                    out.writeInt(aggregate.getCount(month, column));
+                    out.writeLong(aggregate.getTotal(month, column));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SpreadsheetDigest(messageDigest.digest());
+    }
+
+    /**
+     * Writes the digest through a temporary file, so a failed write never leaves a corrupt digest behind.
+     */
+    public void writeTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, (toString() + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the digest in file, or null if there is no file
+     */
+    public static SpreadsheetDigest readFrom(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        String hex = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+        if (hex.length() != HEX_LENGTH) {
+            throw new IOException(String.format("File '%s' is not a spreadsheet digest", file));
+        }
+        byte[] digest = new byte[HEX_LENGTH / 2];
+        for (int i = 0; i < digest.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException(String.format("File '%s' is not a spreadsheet digest", file));
+            }
+            digest[i] = (byte) (high << 4 | low);
+        }
+        return new SpreadsheetDigest(digest);
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("%s is not available", ALGORITHM), e);
+        }
+    }
+
+    private static DataOutputStream newDigestStream(MessageDigest messageDigest) {
+        return new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(DISCARD, messageDigest), BUFFER_SIZE));
+    }
+
+    /**
+     * The length is included, so the boundary between two strings is part of the digest. Null is written as length -1.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        if (strings == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(digest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        return Arrays.equals(digest, ((SpreadsheetDigest) o).digest);
+    }
+
+    /**
+     * @return the digest in lower case hex
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(HEX_LENGTH);
+        for (byte b : digest) {
+            sb.append(Character.forDigit(b >> 4 & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
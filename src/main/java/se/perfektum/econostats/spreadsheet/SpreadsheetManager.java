@@ -1,13 +1,52 @@
 package se.perfektum.econostats.spreadsheet;
 
+import se.perfektum.econostats.aggregation.RollupStore;
 import se.perfektum.econostats.domain.AccountTransaction;
 import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.merge.FingerprintBloomFilter;
+import se.perfektum.econostats.merge.MergeResult;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface SpreadsheetManager {
+    /**
+     * Creates the spreadsheet by classifying all of the transactions. Superseded by the spreadsheets of rolled up totals, which is what the
+     * EconoStatsController creates, and kept for creating a spreadsheet from transactions that are not stored.
+     */
     File createNewSpreadsheet(String filePath, List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) throws Exception;
 
+    /**
+     * Creates the spreadsheet from rolled up totals instead of the transactions.
+     */
+    File createNewSpreadsheet(String filePath, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception;
+
+    /**
+     * Writes the spreadsheet as an ODS file to out instead of a local file, eg. to upload it straight from memory.
+     */
+    void writeSpreadsheet(OutputStream out, List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) throws Exception;
+
+    /**
+     * Writes the spreadsheet of rolled up totals as an ODS file to out instead of a local file.
+     */
+    void writeSpreadsheet(OutputStream out, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception;
+
+    /**
+     * Writes the spreadsheet of rolled up totals as an ODS file to out, updating the spreadsheet in previousFile rather than creating all of it again.
+     * Only the sheets of years whose totals have changed are created again. If there is no previous file, a new spreadsheet is written.
+     */
+    void updateSpreadsheet(OutputStream out, File previousFile, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception;
+
     List<AccountTransaction> mergeAccountTransactions(List<AccountTransaction> importedAccountTransactions, String transactions);
+
+    /**
+     * Same as {@link #mergeAccountTransactions(List, String)}, using a Bloom filter of the stored transactions to skip comparing imported transactions
+     * that are certainly new. The added transactions are put into the filter, so it holds the merged transactions afterwards.
+     *
+     * @param storedFingerprints Filter holding exactly the stored transactions, or null
+     * @return the merged transactions, and the ones that were added
+     */
+    MergeResult<List<AccountTransaction>> mergeAccountTransactions(List<AccountTransaction> importedAccountTransactions, String transactions,
+            FingerprintBloomFilter storedFingerprints);
 }
@@ -1,11 +1,48 @@
 package se.perfektum.econostats.spreadsheet;
 
 import org.odftoolkit.simple.SpreadsheetDocument;
+import se.perfektum.econostats.aggregation.RollupStore;
 import se.perfektum.econostats.domain.AccountTransaction;
 import se.perfektum.econostats.domain.PayeeFilter;
 
+import java.io.OutputStream;
 import java.util.List;
 
 public interface SpreadsheetProcessor {
     SpreadsheetDocument createSpreadsheet(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeesFilters) throws Exception;
+
+    /**
+     * Creates the spreadsheet from rolled up totals, without going through the transactions.
+     *
+     * @param rollups Rollups holding all of the filters
+     */
+    SpreadsheetDocument createSpreadsheet(RollupStore rollups, List<PayeeFilter> payeesFilters) throws Exception;
+
+    /**
+     * Writes the spreadsheet as an ODS file to out. Processors that can write the file without building the whole document in memory should override
+     * this.
+     */
+    default void writeSpreadsheet(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeesFilters, OutputStream out) throws Exception {
+        createSpreadsheet(accountTransactions, payeesFilters).save(out);
+    }
+
+    /**
+     * Writes the spreadsheet of rolled up totals as an ODS file to out.
+     *
+     * @param rollups Rollups holding all of the filters
+     */
+    default void writeSpreadsheet(RollupStore rollups, List<PayeeFilter> payeesFilters, OutputStream out) throws Exception {
+        createSpreadsheet(rollups, payeesFilters).save(out);
+    }
+
+    /**
+     * Updates a spreadsheet previously created by this processor to the rolled up totals, creating only the sheets of years that have changed again.
+     * Processors that can't update a spreadsheet create a new one.
+     *
+     * @param previous The spreadsheet to update, which may be changed and returned
+     * @param rollups Rollups holding all of the filters
+     */
+    default SpreadsheetDocument updateSpreadsheet(SpreadsheetDocument previous, RollupStore rollups, List<PayeeFilter> payeesFilters) throws Exception {
+        return createSpreadsheet(rollups, payeesFilters);
+    }
 }
@@ -0,0 +1,49 @@
+package se.perfektum.econostats.spreadsheet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import se.perfektum.econostats.aggregation.RollupStore;
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+/**
+ * Same as {@link OdfToolkitSpreadsheetManager}, but streams the spreadsheet straight into the file instead of saving a document built in memory. Meant
+ * to be used with a {@link StaxSpreadsheetProcessor}.
+ */
+public class StaxSpreadsheetManager extends OdfToolkitSpreadsheetManager {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public StaxSpreadsheetManager(SpreadsheetProcessor spreadsheetProcessor) {
+        super(spreadsheetProcessor);
+    }
+
+    @Override
+    public File createNewSpreadsheet(String filePath, List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) throws Exception {
+        final File file = new File(filePath);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), BUFFER_SIZE)) {
+            writeSpreadsheet(out, accountTransactions, payeeFilters);
+        }
+        return file;
+    }
+
+    @Override
+    public File createNewSpreadsheet(String filePath, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        final File file = new File(filePath);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), BUFFER_SIZE)) {
+            writeSpreadsheet(out, rollups, payeeFilters);
+        }
+        return file;
+    }
+
+    /**
+     * Streaming the whole spreadsheet is faster than loading the previous one into memory to update it, so the previous file is not used.
+     */
+    @Override
+    public void updateSpreadsheet(OutputStream out, File previousFile, RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        writeSpreadsheet(out, rollups, payeeFilters);
+    }
+}
@@ -0,0 +1,404 @@
+package se.perfektum.econostats.spreadsheet;
+
+import static se.perfektum.econostats.spreadsheet.SheetLayout.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.odftoolkit.odfdom.type.Color;
+import org.odftoolkit.simple.SpreadsheetDocument;
+
+import se.perfektum.econostats.aggregation.RollupStore;
+import se.perfektum.econostats.aggregation.YearAggregate;
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+/**
+ * Writes the same yearly sheets as {@link OdfToolkitSpreadsheetProcessor}, but streams the ODS file (content.xml, styles.xml and the manifest) with
+ * StAX instead of building the document as a DOM, so memory use and write time only depend on the aggregated totals.
+ */
+public class StaxSpreadsheetProcessor extends AbstractSpreadsheetProcessor {
+    private static final String MIMETYPE = "application/vnd.oasis.opendocument.spreadsheet";
+    private static final String ODF_VERSION = "1.2";
+    private static final String OFFICE = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+    private static final String STYLE = "urn:oasis:names:tc:opendocument:xmlns:style:1.0";
+    private static final String TABLE = "urn:oasis:names:tc:opendocument:xmlns:table:1.0";
+    private static final String TEXT = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+    private static final String FO = "urn:oasis:names:tc:opendocument:xmlns:xsl-fo-compatible:1.0";
+    private static final String MANIFEST = "urn:oasis:names:tc:opendocument:xmlns:manifest:1.0";
+    private static final String TABLE_STYLE = "ta1";
+    private static final String PAGE_LAYOUT = "pm1";
+    private static final String MASTER_PAGE = "Default";
+
+    private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    /**
+     * The cell styles of the sheets. They are all known up front, so they are written once, before the sheets.
+     */
+    private enum CellStyle {
+        MONTH_HEADER(PASTEL_PEACH, HEADER_DEFAULT_SIZE, "center"),
+        PAYEE_HEADER(PASTEL_PEACH, HEADER_DEFAULT_SIZE, null),
+        TOTAL_HEADER(GREY, HEADER_DEFAULT_SIZE, "end"),
+        AVERAGE_HEADER(PASTEL_PINK, HEADER_DEFAULT_SIZE, "end"),
+        GRAND_TOTAL_HEADER(PASTEL_PURPLE, HEADER_DEFAULT_SIZE, "end"),
+        MONTH_NAME(PASTEL_PEACH, HEADER_DEFAULT_SIZE, "end"),
+        MONTHLY_TOTAL(null, DEFAULT_SIZE, null),
+        PAYEE_AVERAGE(PASTEL_PINK, DEFAULT_SIZE, null),
+        PAYEE_TOTAL(PASTEL_PURPLE, DEFAULT_SIZE, null),
+        TOTALS(GREY, DEFAULT_SIZE, null);
+
+        private final Color color;
+        private final int fontSize;
+        private final String textAlign;
+
+        CellStyle(Color color, int fontSize, String textAlign) {
+            this.color = color;
+            this.fontSize = fontSize;
+            this.textAlign = textAlign;
+        }
+
+        String getName() {
+            return "ce" + (ordinal() + 1);
+        }
+    }
+
+    @Override
+    public SpreadsheetDocument createSpreadsheet(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeSpreadsheet(accountTransactions, payeeFilters, out);
+        return SpreadsheetDocument.loadDocument(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Override
+    public SpreadsheetDocument createSpreadsheet(RollupStore rollups, List<PayeeFilter> payeeFilters) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeSpreadsheet(rollups, payeeFilters, out);
+        return SpreadsheetDocument.loadDocument(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Writes the ODS file to out, which is left open.
+     */
+    @Override
+    public void writeSpreadsheet(List<AccountTransaction> accountTransactions, List<PayeeFilter> payeeFilters, OutputStream out) throws Exception {
+        writeSpreadsheet(aggregate(accountTransactions, payeeFilters), out);
+    }
+
+    /**
+     * Writes the ODS file to out, which is left open.
+     */
+    @Override
+    public void writeSpreadsheet(RollupStore rollups, List<PayeeFilter> payeeFilters, OutputStream out) throws Exception {
+        writeSpreadsheet(rollups.toAggregates(payeeFilters), out);
+    }
+
+    private void writeSpreadsheet(Collection<YearAggregate> aggregates, OutputStream out) throws IOException, XMLStreamException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+
+        // The mimetype must be the first entry, and stored uncompressed, so the file type can be recognized without unzipping
+        byte[] mimetype = MIMETYPE.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(mimetype);
+        ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+        mimetypeEntry.setMethod(ZipEntry.STORED);
+        mimetypeEntry.setSize(mimetype.length);
+        mimetypeEntry.setCrc(crc.getValue());
+        zip.putNextEntry(mimetypeEntry);
+        zip.write(mimetype);
+        zip.closeEntry();
+
+        zip.putNextEntry(new ZipEntry("content.xml"));
+        writeContent(aggregates, zip);
+        zip.closeEntry();
+
+        zip.putNextEntry(new ZipEntry("styles.xml"));
+        writeStyles(zip);
+        zip.closeEntry();
+
+        zip.putNextEntry(new ZipEntry("META-INF/manifest.xml"));
+        writeManifest(zip);
+        zip.closeEntry();
+
+        // Not closed, as that would close out
+        zip.finish();
+        zip.flush();
+    }
+
+    private void writeContent(Collection<YearAggregate> aggregates, OutputStream out) throws XMLStreamException {
+        XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        xml.writeStartElement("office", "document-content", OFFICE);
+        xml.writeNamespace("office", OFFICE);
+        xml.writeNamespace("style", STYLE);
+        xml.writeNamespace("table", TABLE);
+        xml.writeNamespace("text", TEXT);
+        xml.writeNamespace("fo", FO);
+        xml.writeAttribute("office", OFFICE, "version", ODF_VERSION);
+
+        xml.writeStartElement("office", "automatic-styles", OFFICE);
+        xml.writeStartElement("style", "style", STYLE);
+        xml.writeAttribute("style", STYLE, "name", TABLE_STYLE);
+        xml.writeAttribute("style", STYLE, "family", "table");
+        xml.writeAttribute("style", STYLE, "master-page-name", MASTER_PAGE);
+        xml.writeEmptyElement("style", "table-properties", STYLE);
+        xml.writeAttribute("table", TABLE, "display", "true");
+        xml.writeAttribute("style", STYLE, "writing-mode", "lr-tb");
+        xml.writeEndElement();
+        for (int width : getColumnWidths(aggregates)) {
+            xml.writeStartElement("style", "style", STYLE);
+            xml.writeAttribute("style", STYLE, "name", getColumnStyleName(width));
+            xml.writeAttribute("style", STYLE, "family", "table-column");
+            xml.writeEmptyElement("style", "table-column-properties", STYLE);
+            xml.writeAttribute("style", STYLE, "column-width", width + "mm");
+            xml.writeEndElement();
+        }
+        for (CellStyle cellStyle : CellStyle.values()) {
+            writeCellStyle(xml, cellStyle);
+        }
+        xml.writeEndElement();
+
+        xml.writeStartElement("office", "body", OFFICE);
+        xml.writeStartElement("office", "spreadsheet", OFFICE);
+        for (YearAggregate aggregate : aggregates) {
+            writeSheet(xml, aggregate);
+        }
+        xml.writeEndElement();
+        xml.writeEndElement();
+
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+    }
+
+    private void writeCellStyle(XMLStreamWriter xml, CellStyle cellStyle) throws XMLStreamException {
+        xml.writeStartElement("style", "style", STYLE);
+        xml.writeAttribute("style", STYLE, "name", cellStyle.getName());
+        xml.writeAttribute("style", STYLE, "family", "table-cell");
+        if (cellStyle.color != null) {
+            xml.writeEmptyElement("style", "table-cell-properties", STYLE);
+            xml.writeAttribute("fo", FO, "background-color", cellStyle.color.toString());
+        }
+        if (cellStyle.textAlign != null) {
+            xml.writeEmptyElement("style", "paragraph-properties", STYLE);
+            xml.writeAttribute("fo", FO, "text-align", cellStyle.textAlign);
+        }
+        xml.writeEmptyElement("style", "text-properties", STYLE);
+        xml.writeAttribute("fo", FO, "font-size", cellStyle.fontSize + "pt");
+        xml.writeAttribute("fo", FO, "font-weight", "bold");
+        xml.writeEndElement();
+    }
+
+    private void writeSheet(XMLStreamWriter xml, YearAggregate aggregate) throws XMLStreamException {
+        List<PayeeFilter> payeeFilters = aggregate.getPayeeFilters();
+        int totalColumn = getTotalColumn(payeeFilters.size());
+
+        xml.writeStartElement("table", "table", TABLE);
+        xml.writeAttribute("table", TABLE, "name", aggregate.getYear().toString());
+        xml.writeAttribute("table", TABLE, "style-name", TABLE_STYLE);
+
+        // Payee columns are only as wide as their headers, and only if they have a header
+        xml.writeEmptyElement("table", "table-column", TABLE);
+        for (int i = 0; i < payeeFilters.size(); i++) {
+            xml.writeEmptyElement("table", "table-column", TABLE);
+            if (aggregate.getCount(i) > 0) {
+                xml.writeAttribute("table", TABLE, "style-name", getColumnStyleName(getColumnWidth(payeeFilters.get(i).getAlias())));
+            }
+        }
+        xml.writeEmptyElement("table", "table-column", TABLE);
+
+        // Headers
+        xml.writeStartElement("table", "table-row", TABLE);
+        writeStringCell(xml, MONTH, CellStyle.MONTH_HEADER);
+        for (int i = 0; i < payeeFilters.size(); i++) {
+            if (aggregate.getCount(i) > 0) {
+                writeStringCell(xml, payeeFilters.get(i).getAlias(), CellStyle.PAYEE_HEADER);
+            } else {
+                xml.writeEmptyElement("table", "table-cell", TABLE);
+            }
+        }
+        writeStringCell(xml, TOTAL, CellStyle.TOTAL_HEADER);
+        xml.writeEndElement();
+
+        // Payee invoices, leaving months without transactions blank
+        for (Month month : Month.values()) {
+            xml.writeStartElement("table", "table-row", TABLE);
+            writeStringCell(xml, getMonthName(month), CellStyle.MONTH_NAME);
+            for (int i = 0; i < payeeFilters.size(); i++) {
+                if (aggregate.getCount(month, i) > 0) {
+                    writeFloatCell(xml, aggregate.getTotal(month, i) / (double) MINOR_UNITS);
+                } else {
+                    xml.writeEmptyElement("table", "table-cell", TABLE);
+                }
+            }
+            writeFormulaCell(xml, getMonthlyTotalFormula(month.getValue(), payeeFilters.size()), CellStyle.MONTHLY_TOTAL);
+            xml.writeEndElement();
+        }
+
+        // Average and totals per payee
+        xml.writeStartElement("table", "table-row", TABLE);
+        writeStringCell(xml, AVERAGE, CellStyle.AVERAGE_HEADER);
+        for (int i = 0; i < payeeFilters.size(); i++) {
+            writeFormulaCell(xml, getAverageFormula(i + COLUMN_OFFSET), CellStyle.PAYEE_AVERAGE);
+        }
+        writeFormulaCell(xml, getAverageFormula(totalColumn), CellStyle.TOTALS);
+        xml.writeEndElement();
+
+        xml.writeStartElement("table", "table-row", TABLE);
+        writeStringCell(xml, GRAND_TOTAL, CellStyle.GRAND_TOTAL_HEADER);
+        for (int i = 0; i < payeeFilters.size(); i++) {
+            writeFormulaCell(xml, getSumFormula(i + COLUMN_OFFSET), CellStyle.PAYEE_TOTAL);
+        }
+        writeFormulaCell(xml, getSumFormula(totalColumn), CellStyle.TOTALS);
+        xml.writeEndElement();
+
+        xml.writeEndElement();
+    }
+
+    private void writeStringCell(XMLStreamWriter xml, String value, CellStyle cellStyle) throws XMLStreamException {
+        xml.writeStartElement("table", "table-cell", TABLE);
+        xml.writeAttribute("table", TABLE, "style-name", cellStyle.getName());
+        xml.writeAttribute("office", OFFICE, "value-type", "string");
+        xml.writeAttribute("office", OFFICE, "string-value", value);
+        writeParagraph(xml, value);
+        xml.writeEndElement();
+    }
+
+    private void writeFloatCell(XMLStreamWriter xml, double value) throws XMLStreamException {
+        xml.writeStartElement("table", "table-cell", TABLE);
+        xml.writeAttribute("office", OFFICE, "value-type", "float");
+        xml.writeAttribute("office", OFFICE, "value", Double.toString(value));
+        writeParagraph(xml, Double.toString(value));
+        xml.writeEndElement();
+    }
+
+    /**
+     * Writes a formula cell the way the ODF Toolkit does, as an empty string that the formula replaces when the spreadsheet is opened.
+     */
+    private void writeFormulaCell(XMLStreamWriter xml, String formula, CellStyle cellStyle) throws XMLStreamException {
+        xml.writeStartElement("table", "table-cell", TABLE);
+        xml.writeAttribute("table", TABLE, "style-name", cellStyle.getName());
+        xml.writeAttribute("table", TABLE, "formula", formula);
+        xml.writeAttribute("office", OFFICE, "value-type", "string");
+        xml.writeAttribute("office", OFFICE, "string-value", "");
+        xml.writeEmptyElement("text", "p", TEXT);
+        xml.writeEndElement();
+    }
+
+    /**
+     * Writes text as a paragraph. Line breaks, tabs and repeated spaces are not preserved as such in ODF text, so they are written as elements.
+     */
+    private void writeParagraph(XMLStreamWriter xml, String value) throws XMLStreamException {
+        xml.writeStartElement("text", "p", TEXT);
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            int spaces = 0;
+            while (c == ' ' && i + spaces + 1 < value.length() && value.charAt(i + spaces + 1) == ' ') {
+                spaces++;
+            }
+            if (c != '\n' && c != '\t' && spaces == 0) {
+                continue;
+            }
+            if (spaces > 0) {
+                // The first space is kept as text, the rest are counted
+                xml.writeCharacters(value.substring(start, i + 1));
+                xml.writeEmptyElement("text", "s", TEXT);
+                xml.writeAttribute("text", TEXT, "c", Integer.toString(spaces));
+                i += spaces;
+            } else {
+                xml.writeCharacters(value.substring(start, i));
+                xml.writeEmptyElement("text", c == '\n' ? "line-break" : "tab", TEXT);
+            }
+            start = i + 1;
+        }
+        xml.writeCharacters(value.substring(start));
+        xml.writeEndElement();
+    }
+
+    private void writeStyles(OutputStream out) throws XMLStreamException {
+        XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        xml.writeStartElement("office", "document-styles", OFFICE);
+        xml.writeNamespace("office", OFFICE);
+        xml.writeNamespace("style", STYLE);
+        xml.writeAttribute("office", OFFICE, "version", ODF_VERSION);
+        // A default cell style, which readers like the ODF Toolkit fall back on for properties the cell styles don't set
+        xml.writeStartElement("office", "styles", OFFICE);
+        xml.writeStartElement("style", "default-style", STYLE);
+        xml.writeAttribute("style", STYLE, "family", "table-cell");
+        xml.writeEmptyElement("style", "table-cell-properties", STYLE);
+        xml.writeEmptyElement("style", "paragraph-properties", STYLE);
+        xml.writeEmptyElement("style", "text-properties", STYLE);
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeStartElement("office", "automatic-styles", OFFICE);
+        xml.writeEmptyElement("style", "page-layout", STYLE);
+        xml.writeAttribute("style", STYLE, "name", PAGE_LAYOUT);
+        xml.writeEndElement();
+        xml.writeStartElement("office", "master-styles", OFFICE);
+        xml.writeEmptyElement("style", "master-page", STYLE);
+        xml.writeAttribute("style", STYLE, "name", MASTER_PAGE);
+        xml.writeAttribute("style", STYLE, "page-layout-name", PAGE_LAYOUT);
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+    }
+
+    private void writeManifest(OutputStream out) throws XMLStreamException {
+        XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        xml.writeStartElement("manifest", "manifest", MANIFEST);
+        xml.writeNamespace("manifest", MANIFEST);
+        xml.writeAttribute("manifest", MANIFEST, "version", ODF_VERSION);
+        writeFileEntry(xml, "/", MIMETYPE);
+        writeFileEntry(xml, "content.xml", "text/xml");
+        writeFileEntry(xml, "styles.xml", "text/xml");
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+    }
+
+    private void writeFileEntry(XMLStreamWriter xml, String path, String mediaType) throws XMLStreamException {
+        xml.writeEmptyElement("manifest", "file-entry", MANIFEST);
+        xml.writeAttribute("manifest", MANIFEST, "full-path", path);
+        xml.writeAttribute("manifest", MANIFEST, "media-type", mediaType);
+        if ("/".equals(path)) {
+            xml.writeAttribute("manifest", MANIFEST, "version", ODF_VERSION);
+        }
+    }
+
+    /**
+     * @return the distinct widths of all payee columns with a header
+     */
+    private SortedSet<Integer> getColumnWidths(Collection<YearAggregate> aggregates) {
+        SortedSet<Integer> widths = new TreeSet<>();
+        for (YearAggregate aggregate : aggregates) {
+            for (int i = 0; i < aggregate.getPayeeFilters().size(); i++) {
+                if (aggregate.getCount(i) > 0) {
+                    widths.add(getColumnWidth(aggregate.getPayeeFilters().get(i).getAlias()));
+                }
+            }
+        }
+        return widths;
+    }
+
+    private String getColumnStyleName(int width) {
+        return "co" + width;
+    }
+}
@@ -2,18 +2,32 @@ package se.perfektum.econostats.utils;
 
 import static com.google.gson.JsonParser.parseString;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import se.perfektum.econostats.domain.StringPool;
 
 public class JsonUtils {
 
+    // Strings read from json are interned, so the repeated headers and currencies of stored transactions share instances
+    private static final Gson GSON = new GsonBuilder().registerTypeAdapter(String.class, new PooledStringAdapter()).create();
+
     /**
      * Gets a list of top element objects <T> from provided json String.
      *
@@ -28,7 +42,7 @@ public class JsonUtils {
         Type listType = TypeToken.getParameterized(ArrayList.class, clazz).getType();
 
         String elementName = Character.toLowerCase(clazz.getSimpleName().charAt(0)) + clazz.getSimpleName().substring(1) + "s";
-        List<T> result = new Gson().fromJson(transactions.getAsJsonArray(elementName), listType);
+        List<T> result = GSON.fromJson(transactions.getAsJsonArray(elementName), listType);
 
         return result;
     }
@@ -45,4 +59,41 @@ public class JsonUtils {
         m.put(rootElement, json);
         return new Gson().toJson(m);
     }
+
+    /**
+     * Digests json as stored, eg. to tell whether something derived from a stored json file, like a fingerprint filter, still matches the file.
+     *
+     * @return the SHA-256 digest of the UTF-8 bytes of json, in lower case hex
+     */
+    public static String digest(String json) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        StringBuilder sb = new StringBuilder(2 * digest.length);
+        for (byte b : digest) {
+            sb.append(Character.forDigit(b >> 4 & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static class PooledStringAdapter extends TypeAdapter<String> {
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            // Same leniency as Gson's own String adapter
+            return StringPool.getInstance().intern(token == JsonToken.BOOLEAN ? Boolean.toString(in.nextBoolean()) : in.nextString());
+        }
+    }
 }
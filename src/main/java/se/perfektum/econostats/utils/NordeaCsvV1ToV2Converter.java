@@ -1,80 +1,163 @@
 package se.perfektum.econostats.utils;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import com.univocity.parsers.csv.CsvParser;
 import com.univocity.parsers.csv.CsvParserSettings;
 import com.univocity.parsers.csv.CsvWriter;
 import com.univocity.parsers.csv.CsvWriterSettings;
 
+import se.perfektum.econostats.bank.CsvReader;
+import se.perfektum.econostats.bank.nordea.NordeaAmountParser;
+import se.perfektum.econostats.bank.nordea.NordeaCsvReader;
+
+/**
+ * Converts legacy Nordea V1 csv files, one row at a time, so files of any size can be converted in constant memory.
+ */
 public class NordeaCsvV1ToV2Converter {
 
-    public static void main(String[] args) {
-        convert("C:\\EconoStats\\nordeaGemensamtNew.csv", "C:\\EconoStats\\nyfil.csv");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2) {
+            convert(Paths.get(args[0]), Paths.get(args[1]));
+        } else {
+            convert(Paths.get("C:\\EconoStats\\nordeaGemensamtNew.csv"), Paths.get("C:\\EconoStats\\nyfil.csv"));
+        }
+        System.out.println("Done!");
     }
 
-    // This will take all input from inFile and put it in the selected order into
-    // outFile.
-    // Limitation: If there are quotations in the header (transaktion in this case),
-    // they will be multiplied (ie. " --> """) for some reason. I couldn't quite get
-    // it to work properly, so I'll leave it up to the user to fix in notepad or
-    // something (simply replace """ with " in the file)
-    private static void convert(String inFile, String outFile) {
+    /**
+     * Converts a V1 csv file. Rows are read, converted and written one at a time through a buffered FileChannel.
+     *
+     * @param inFile  The V1 csv file to convert
+     * @param outFile The file to write, replaced if it exists. Must not be the same file as inFile, which would be emptied before it is read
+     */
+    public static void convert(Path inFile, Path outFile) throws IOException {
+        if (Files.exists(outFile) && Files.isSameFile(inFile, outFile)) {
+            throw new IllegalArgumentException(String.format("Cannot convert '%s' to itself", inFile));
+        }
+        // This will take all input from inFile and put it in the selected order into
+        // outFile.
+        // Limitation: If there are quotations in the header (transaktion in this case),
+        // they will be multiplied (ie. " --> """) for some reason. I couldn't quite get
+        // it to work properly, so I'll leave it up to the user to fix in notepad or
+        // something (simply replace """ with " in the file)
         CsvParserSettings parserSettings = new CsvParserSettings();
         parserSettings.detectFormatAutomatically();
         parserSettings.setKeepQuotes(true);
 
         CsvParser parser = new CsvParser(parserSettings);
 
-        List<String[]> allLines = parser.parseAll(new File(inFile));
-
-        ByteArrayOutputStream csvResult = new ByteArrayOutputStream();
-
-        Writer outputWriter = new OutputStreamWriter(csvResult);
-
         CsvWriterSettings writerSettings = new CsvWriterSettings();
         writerSettings.setNullValue("");
         writerSettings.setEmptyValue("");
         writerSettings.setSkipEmptyLines(false);
         writerSettings.setHeaders("Datum", "Belopp", "Transaktion", "Saldo");
         writerSettings.selectFields("Datum", "Transaktion", "Kategori", "Belopp", "Saldo");
-        CsvWriter writer = new CsvWriter(outputWriter, writerSettings);
 
-        writer.writeHeaders();
+        try (FileChannel channel = FileChannel.open(outFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                Writer outputWriter = new BufferedWriter(Channels.newWriter(channel, NordeaCsvReader.CHARSET.newEncoder(), -1), BUFFER_SIZE)) {
+            CsvWriter writer = new CsvWriter(outputWriter, writerSettings);
+            writer.writeHeaders();
+
+            parser.beginParsing(inFile.toFile(), NordeaCsvReader.CHARSET);
+            try {
+                // Skip the V1 headers
+                parser.parseNext();
+                String[] line;
+                while ((line = parser.parseNext()) != null) {
+                    String amount = line.length > 3 ? convertAmount(line[3]) : null;
+                    String balance = line.length > 4 ? convertAmount(line[4]) : null;
+                    String[] result = { line[0], line[1], line[2], amount, balance };
+                    writer.writeRow(result);
+                }
+            } finally {
+                parser.stopParsing();
+            }
+            writer.close();
+        }
+    }
 
-        for (int i = 1; i < allLines.size(); i++) {
-            String amount = allLines.get(i)[3];
-            String balance = null;
+    /**
+     * Converts all V1 csv files in a directory in parallel, on a fork-join pool bounded by the number of available processors. The converted files get
+     * the same names as the original files.
+     *
+     * @param inDirectory  Directory containing the V1 csv files
+     * @param outDirectory Directory to write the converted files to, created if it does not exist. Must not be the same directory as inDirectory
+     * @return The converted files
+     */
+    public static List<Path> convertDirectory(Path inDirectory, Path outDirectory) throws IOException {
+        if (Files.exists(outDirectory) && Files.isSameFile(inDirectory, outDirectory)) {
+            throw new IllegalArgumentException(String.format("Cannot convert the files in '%s' into the same directory", inDirectory));
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(inDirectory, CsvReader.DEFAULT_GLOB)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Files.createDirectories(outDirectory);
+        if (files.isEmpty()) {
+            return files;
+        }
 
-            if (amount != null) {
-                amount = amount.trim().replaceAll("\"", "").replaceAll("\\.", "").replaceAll(",", ".").replaceAll("\u2212", "\u002D");
+        ForkJoinPool pool = new ForkJoinPool(Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            return pool.submit(() -> files.parallelStream().map(file -> {
+                Path outFile = outDirectory.resolve(file.getFileName());
+                try {
+                    convert(file, outFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return outFile;
+            }).collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
             }
-            if (allLines.get(i).length > 4 && allLines.get(i)[4] != null) {
-                balance = allLines.get(i)[4].trim().replaceAll("\"", "").replaceAll("\\.", "").replaceAll(",", ".").replaceAll("\u2212", "\u002D");
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
             }
-            String[] result = { allLines.get(i)[0], allLines.get(i)[1], allLines.get(i)[2], amount, balance };
-            writer.writeRow(result);
+            throw new IOException(cause);
+        } finally {
+            pool.shutdown();
         }
-
-        writer.close();
-
-        writeToFile(csvResult, outFile);
-//        System.out.println(csvResult.toString());
-        System.out.println("Done!");
     }
 
-    private static void writeToFile(ByteArrayOutputStream csvResult, String outFile) {
-        try (OutputStream outputStream = new FileOutputStream(outFile)) {
-            csvResult.writeTo(outputStream);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static String convertAmount(String value) {
+        if (value == null) {
+            return null;
+        }
+        String amount = value.trim();
+        if (amount.length() > 1 && amount.charAt(0) == '"' && amount.charAt(amount.length() - 1) == '"') {
+            amount = amount.substring(1, amount.length() - 1);
         }
+        BigDecimal parsed = NordeaAmountParser.parse(amount);
+        return parsed == null ? "" : parsed.toPlainString();
     }
 }
@@ -0,0 +1,182 @@
+package se.perfektum.econostats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static se.perfektum.econostats.dev.TestTransactions.filter;
+import static se.perfektum.econostats.dev.TestTransactions.transaction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import se.perfektum.econostats.aggregation.RollupStore;
+import se.perfektum.econostats.bank.CsvReader;
+import se.perfektum.econostats.configuration.AppProperties;
+import se.perfektum.econostats.dao.AccountTransactionDao;
+import se.perfektum.econostats.dao.googledrive.GoogleDriveDao;
+import se.perfektum.econostats.dao.googledrive.MimeTypes;
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.merge.FingerprintBloomFilter;
+import se.perfektum.econostats.merge.TransactionMerger;
+import se.perfektum.econostats.spreadsheet.SpreadsheetManager;
+import se.perfektum.econostats.utils.JsonUtils;
+
+public class EconoStatsControllerTest {
+    private static final byte[] SPREADSHEET = "The spreadsheet as written by the SpreadsheetManager".getBytes(StandardCharsets.UTF_8);
+
+    private AccountTransactionDao accountTransactionDao = mock(AccountTransactionDao.class);
+    private SpreadsheetManager spreadsheetManager = mock(SpreadsheetManager.class);
+    private Path directory;
+    private EconoStatsController controller;
+
+    private List<PayeeFilter> payeeFilters = Arrays.asList(filter("Food", "ica"));
+    private List<AccountTransaction> accountTransactions = Arrays.asList(
+            transaction(LocalDate.of(2018, 1, 2), "-100.00", "ICA"),
+            transaction(LocalDate.of(2018, 2, 2), "-200.00", "ICA"));
+
+    @Before
+    public void createController() throws Exception {
+        directory = Files.createTempDirectory("econostats");
+        AppProperties appProperties = new AppProperties();
+        appProperties.setOutputFilesPath(directory.toString());
+        appProperties.setStoragePath("EconoStats");
+        appProperties.setTransactionsFilename("transactions.json");
+        appProperties.setSpreadsheetFilename("recurringTransactions");
+        appProperties.setPayeeFiltersFileName("payeeFilters.json");
+        appProperties.setTransactionsPath(directory.resolve("transactions.json").toString());
+        appProperties.setRecurringTransactionsPath(directory.resolve("recurringTransactions.ods").toString());
+        appProperties.setFingerprintFilterPath(directory.resolve("fingerprints.bin").toString());
+        appProperties.setFingerprintFilterSize(1000);
+        appProperties.setFingerprintFilterFalsePositiveRate(0.01);
+        appProperties.setRollupsPath(directory.resolve("rollups.bin").toString());
+        appProperties.setSpreadsheetDigestPath(directory.resolve("recurringTransactions.ods.sha256").toString());
+        appProperties.setKeepLocalCopies(false);
+        controller = new EconoStatsController(spreadsheetManager, mock(CsvReader.class), accountTransactionDao, appProperties);
+
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(SPREADSHEET);
+            return null;
+        }).when(spreadsheetManager).writeSpreadsheet(any(OutputStream.class), any(RollupStore.class), anyList());
+        doAnswer(invocation -> new TransactionMerger().mergeSorted(invocation.getArgument(0), JsonUtils.getJsonElement(AccountTransaction.class, invocation.getArgument(1)),
+                invocation.getArgument(2))).when(spreadsheetManager).mergeAccountTransactions(anyList(), any(String.class), any());
+    }
+
+    @After
+    public void deleteDirectory() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void firstImportShouldUploadWrittenFiles() throws Exception {
+        when(accountTransactionDao.createFolder("EconoStats")).thenReturn("folder");
+
+        controller.generateRecurringTransactions(payeeFilters, accountTransactions);
+
+        ArgumentCaptor<InputStream> transactions = ArgumentCaptor.forClass(InputStream.class);
+        verify(accountTransactionDao).createFile(eq("transactions.json"), transactions.capture(), eq(Arrays.asList("folder")), eq(MimeTypes.APPLICATION_JSON.toString()),
+                eq(MimeTypes.APPLICATION_JSON.toString()));
+        assertArrayEquals(JsonUtils.convertObjectsToJson(accountTransactions, "accountTransactions").getBytes(StandardCharsets.UTF_8),
+                IOUtils.toByteArray(transactions.getValue()));
+
+        ArgumentCaptor<InputStream> spreadsheet = ArgumentCaptor.forClass(InputStream.class);
+        verify(accountTransactionDao).createFile(eq("recurringTransactions"), spreadsheet.capture(), eq(Arrays.asList("folder")),
+                eq(MimeTypes.GOOGLE_API_SPREADSHEET.toString()), eq(MimeTypes.TEXT_ODS.toString()));
+        assertArrayEquals(SPREADSHEET, IOUtils.toByteArray(spreadsheet.getValue()));
+    }
+
+    @Test
+    public void existingSpreadsheetShouldBeReplacedByWrittenSpreadsheet() throws Exception {
+        when(accountTransactionDao.searchForFile("EconoStats", GoogleDriveDao.APPLICATION_VND_GOOGLE_APPS_FOLDER)).thenReturn(Arrays.asList("folder"));
+        when(accountTransactionDao.searchForFile("transactions.json", MimeTypes.APPLICATION_JSON.toString())).thenReturn(Arrays.asList("transactions"));
+        when(accountTransactionDao.searchForFile("recurringTransactions", MimeTypes.GOOGLE_API_SPREADSHEET.toString())).thenReturn(Arrays.asList("spreadsheet"));
+        when(accountTransactionDao.getFile("transactions")).thenReturn(JsonUtils.convertObjectsToJson(accountTransactions, "accountTransactions"));
+
+        controller.generateRecurringTransactions(payeeFilters, null);
+
+        ArgumentCaptor<InputStream> spreadsheet = ArgumentCaptor.forClass(InputStream.class);
+        verify(accountTransactionDao).updateFile(eq("spreadsheet"), spreadsheet.capture(), eq(MimeTypes.TEXT_ODS.toString()));
+        assertArrayEquals(SPREADSHEET, IOUtils.toByteArray(spreadsheet.getValue()));
+    }
+
+    @Test
+    public void unchangedTransactionsAndFiltersShouldNotCreateSpreadsheetAgain() throws Exception {
+        when(accountTransactionDao.searchForFile("EconoStats", GoogleDriveDao.APPLICATION_VND_GOOGLE_APPS_FOLDER)).thenReturn(Arrays.asList("folder"));
+        when(accountTransactionDao.searchForFile("transactions.json", MimeTypes.APPLICATION_JSON.toString())).thenReturn(Arrays.asList("transactions"));
+        when(accountTransactionDao.searchForFile("recurringTransactions", MimeTypes.GOOGLE_API_SPREADSHEET.toString())).thenReturn(Arrays.asList("spreadsheet"));
+        String stored = JsonUtils.convertObjectsToJson(accountTransactions, "accountTransactions");
+        when(accountTransactionDao.getFile("transactions")).thenReturn(stored);
+        // The stored transactions imported again, with empty rather than null fields like the csv readers give
+        List<AccountTransaction> imported = JsonUtils.getJsonElement(AccountTransaction.class, stored);
+        controller.generateRecurringTransactions(payeeFilters, imported);
+        verify(accountTransactionDao).updateFile(eq("spreadsheet"), any(InputStream.class), eq(MimeTypes.TEXT_ODS.toString()));
+        clearInvocations(accountTransactionDao, spreadsheetManager);
+
+        controller.generateRecurringTransactions(payeeFilters, imported);
+
+        verify(spreadsheetManager, never()).writeSpreadsheet(any(OutputStream.class), any(RollupStore.class), anyList());
+        verify(accountTransactionDao, never()).updateFile(any(String.class), any(InputStream.class), any(String.class));
+        verify(accountTransactionDao, never()).createFile(any(String.class), any(InputStream.class), anyList(), any(String.class), any(String.class));
+
+        List<PayeeFilter> edited = Arrays.asList(filter("Food", "ica", "coop"));
+        controller.generateRecurringTransactions(edited, imported);
+
+        verify(spreadsheetManager).writeSpreadsheet(any(OutputStream.class), any(RollupStore.class), eq(edited));
+        verify(accountTransactionDao).updateFile(eq("spreadsheet"), any(InputStream.class), eq(MimeTypes.TEXT_ODS.toString()));
+    }
+
+    @Test
+    public void fingerprintFilterShouldOnlyBeSavedOnceTransactionsAreUploaded() throws Exception {
+        Path fingerprints = directory.resolve("fingerprints.bin");
+        when(accountTransactionDao.createFolder("EconoStats")).thenReturn("folder");
+        controller.generateRecurringTransactions(payeeFilters, accountTransactions);
+        String stored = JsonUtils.convertObjectsToJson(accountTransactions, "accountTransactions");
+        assertEquals(JsonUtils.digest(stored), FingerprintBloomFilter.readFrom(fingerprints).getHistoryDigest());
+
+        when(accountTransactionDao.searchForFile("EconoStats", GoogleDriveDao.APPLICATION_VND_GOOGLE_APPS_FOLDER)).thenReturn(Arrays.asList("folder"));
+        when(accountTransactionDao.searchForFile("transactions.json", MimeTypes.APPLICATION_JSON.toString())).thenReturn(Arrays.asList("transactions"));
+        when(accountTransactionDao.getFile("transactions")).thenReturn(stored);
+        doThrow(new IOException("Upload failed")).when(accountTransactionDao).updateFile(eq("transactions"), any(InputStream.class), eq(MimeTypes.APPLICATION_JSON.toString()));
+        try {
+            controller.generateRecurringTransactions(payeeFilters, Arrays.asList(transaction(LocalDate.of(2018, 3, 2), "-300.00", "ICA")));
+            fail("The failed upload should be thrown");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // the filter still holds the transactions on Drive, not the ones that failed to be uploaded
+        FingerprintBloomFilter filter = FingerprintBloomFilter.readFrom(fingerprints);
+        assertEquals(JsonUtils.digest(stored), filter.getHistoryDigest());
+        assertEquals(accountTransactions.size(), filter.getTransactionCount());
+    }
+}
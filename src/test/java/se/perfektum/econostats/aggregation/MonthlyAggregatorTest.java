@@ -0,0 +1,65 @@
+package se.perfektum.econostats.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static se.perfektum.econostats.dev.TestTransactions.filter;
+import static se.perfektum.econostats.dev.TestTransactions.transaction;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.matching.TransactionClassifier;
+
+public class MonthlyAggregatorTest {
+    private final MonthlyAggregator aggregator = new MonthlyAggregator();
+
+    @Test
+    public void aggregateShouldSumTruncatedAmountsPerYearMonthAndFilter() {
+        List<PayeeFilter> filters = Arrays.asList(filter("Phone", "telia"), filter("Food", "ica"));
+        List<AccountTransaction> transactions = Arrays.asList(
+                transaction(LocalDate.of(2017, 12, 27), "-99.90", "Telia"),
+                transaction(LocalDate.of(2018, 1, 2), "-250.75", "ICA Kvantum"),
+                transaction(LocalDate.of(2018, 1, 20), "-100.50", "ICA Nära"),
+                transaction(LocalDate.of(2018, 3, 27), "-399.00", "Telia"),
+                transaction(LocalDate.of(2018, 3, 28), "-10.00", "Spotify"));
+
+        List<YearAggregate> aggregates = aggregator.aggregate(new TransactionClassifier(filters).classify(transactions));
+
+        assertEquals(2, aggregates.size());
+        YearAggregate y2017 = aggregates.get(0);
+        assertEquals(Year.of(2017), y2017.getYear());
+        assertEquals(Arrays.asList(filters.get(0)), y2017.getPayeeFilters());
+        assertEquals(9900, y2017.getTotal(Month.DECEMBER, 0));
+
+        YearAggregate y2018 = aggregates.get(1);
+        // Columns sorted by alias
+        assertEquals(Arrays.asList(filters.get(1), filters.get(0)), y2018.getPayeeFilters());
+        assertEquals(35000, y2018.getTotal(Month.JANUARY, 0));
+        assertEquals(2, y2018.getCount(Month.JANUARY, 0));
+        assertEquals(0, y2018.getCount(Month.FEBRUARY, 0));
+        assertEquals(39900, y2018.getTotal(Month.MARCH, 1));
+        assertEquals(39900, y2018.getTotal(1));
+        assertEquals(1, y2018.getCount(1));
+    }
+
+    @Test
+    public void aggregateShouldAddTransactionToEachMatchingFilterOnce() {
+        PayeeFilter coop = filter("Coop", "coop");
+        List<PayeeFilter> filters = Arrays.asList(coop, filter("Bank", "bank", "coop bank"), filter("Coop", "coop"));
+        List<AccountTransaction> transactions = Arrays.asList(transaction(LocalDate.of(2018, 5, 1), "-100.00", "Coop Bank"));
+
+        YearAggregate aggregate = aggregator.aggregate(new TransactionClassifier(filters).classify(transactions)).get(0);
+
+        // The two equal Coop filters share a column
+        assertEquals(2, aggregate.getColumnCount());
+        assertEquals(10000, aggregate.getTotal(Month.MAY, 0));
+        assertEquals(10000, aggregate.getTotal(Month.MAY, 1));
+        assertEquals(1, aggregate.getCount(Month.MAY, 1));
+    }
+}
@@ -0,0 +1,110 @@
+package se.perfektum.econostats.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static se.perfektum.econostats.dev.TestTransactions.filters;
+import static se.perfektum.econostats.dev.TestTransactions.transactions;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.matching.TransactionClassifier;
+import se.perfektum.econostats.utils.JsonUtils;
+
+public class RollupStoreTest {
+
+    private static void assertAggregatesEqual(List<YearAggregate> expected, List<YearAggregate> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getYear(), actual.get(i).getYear());
+            assertEquals(expected.get(i).getPayeeFilters(), actual.get(i).getPayeeFilters());
+            for (int column = 0; column < expected.get(i).getColumnCount(); column++) {
+                for (Month month : Month.values()) {
+                    assertEquals(expected.get(i).getTotal(month, column), actual.get(i).getTotal(month, column));
+                    assertEquals(expected.get(i).getCount(month, column), actual.get(i).getCount(month, column));
+                }
+            }
+        }
+    }
+
+    private static String digest(List<AccountTransaction> transactions) {
+        return JsonUtils.digest(JsonUtils.convertObjectsToJson(transactions, "accountTransactions"));
+    }
+
+    private static List<YearAggregate> aggregate(List<AccountTransaction> transactions, List<PayeeFilter> filters) {
+        return new MonthlyAggregator().aggregate(new TransactionClassifier(filters).classify(transactions));
+    }
+
+    @Test
+    public void rollupsShouldGiveSameAggregatesAsTransactions() {
+        List<AccountTransaction> stored = transactions(0, 1000);
+
+        assertAggregatesEqual(aggregate(stored, filters()), RollupStore.of(stored, filters(), digest(stored)).toAggregates(filters()));
+    }
+
+    @Test
+    public void addedTransactionsShouldBeRolledUp() {
+        List<AccountTransaction> stored = transactions(0, 1000);
+        List<AccountTransaction> added = transactions(1000, 40);
+        RollupStore store = RollupStore.of(stored, filters(), digest(stored));
+        List<AccountTransaction> all = new ArrayList<>(stored);
+        all.addAll(added);
+
+        store.add(added, filters(), digest(all));
+
+        assertEquals(digest(all), store.getHistoryDigest());
+        assertAggregatesEqual(aggregate(all, filters()), store.toAggregates(filters()));
+    }
+
+    @Test
+    public void editedFilterShouldBeRolledUpAgain() {
+        List<AccountTransaction> stored = transactions(0, 1000);
+        RollupStore store = RollupStore.of(stored, filters(), digest(stored));
+        List<PayeeFilter> edited = new ArrayList<>(filters());
+        edited.set(0, new PayeeFilter(Arrays.asList("telia", "spotify"), new ArrayList<>(), "Phone and music", true));
+
+        store.update(stored, edited, digest(stored));
+
+        assertAggregatesEqual(aggregate(stored, edited), store.toAggregates(edited));
+    }
+
+    @Test
+    public void storeOfOtherTransactionsShouldBeRebuilt() {
+        // As many transactions as the store holds, but not the same ones
+        List<AccountTransaction> stored = transactions(1, 1000);
+        List<AccountTransaction> rolledUp = transactions(0, 1000);
+        RollupStore store = RollupStore.of(rolledUp, filters(), digest(rolledUp));
+
+        store.update(stored, filters(), digest(stored));
+
+        assertEquals(digest(stored), store.getHistoryDigest());
+        assertAggregatesEqual(aggregate(stored, filters()), store.toAggregates(filters()));
+    }
+
+    @Test
+    public void storeShouldBeReadAsWritten() throws Exception {
+        List<AccountTransaction> stored = transactions(0, 1000);
+        Path dir = Files.createTempDirectory("rollups");
+        Path file = dir.resolve("rollups.json");
+        try {
+            assertNull(RollupStore.readFrom(file));
+            RollupStore.of(stored, filters(), digest(stored)).writeTo(file);
+
+            RollupStore read = RollupStore.readFrom(file);
+
+            assertEquals(digest(stored), read.getHistoryDigest());
+            assertAggregatesEqual(aggregate(stored, filters()), read.toAggregates(filters()));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package se.perfektum.econostats.bank;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static se.perfektum.econostats.bank.LineCsvReader.transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+
+public class CsvDirectoryWatcherTest {
+    private static final long QUIET_PERIOD = 500;
+    private static final long TIMEOUT = 10000;
+
+    private CsvReader csvReader = new LineCsvReader();
+
+    @Test
+    public void filesAddedWithinQuietPeriodShouldBeImportedAsOneBatch() throws Exception {
+        Path directory = Files.createTempDirectory("watch");
+        BlockingQueue<List<AccountTransaction>> batches = new LinkedBlockingQueue<>();
+        try (CsvDirectoryWatcher watcher = new CsvDirectoryWatcher(directory, csvReader, QUIET_PERIOD, batches::add)) {
+            watcher.start();
+
+            write(directory, "may.csv", "2018-05-25;Rent", "2018-05-02;Ica");
+            Thread.sleep(QUIET_PERIOD / 5);
+            write(directory, "april.csv", "2018-04-25;Rent");
+            write(directory, "notes.txt", "2018-03-01;Not a csv file");
+
+            List<AccountTransaction> expected = Arrays.asList(transaction("2018-04-25", "Rent"), transaction("2018-05-02", "Ica"),
+                    transaction("2018-05-25", "Rent"));
+            assertEquals(expected, batches.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertNull(batches.poll(2 * QUIET_PERIOD, TimeUnit.MILLISECONDS));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void fileAddedAfterBatchShouldBeImportedInNextBatch() throws Exception {
+        Path directory = Files.createTempDirectory("watch");
+        BlockingQueue<List<AccountTransaction>> batches = new LinkedBlockingQueue<>();
+        try (CsvDirectoryWatcher watcher = new CsvDirectoryWatcher(directory, csvReader, QUIET_PERIOD, batches::add)) {
+            watcher.start();
+
+            write(directory, "april.csv", "2018-04-25;Rent");
+            assertEquals(Arrays.asList(transaction("2018-04-25", "Rent")), batches.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+            write(directory, "may.csv", "2018-05-25;Rent");
+            assertEquals(Arrays.asList(transaction("2018-05-25", "Rent")), batches.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertNull(batches.poll(2 * QUIET_PERIOD, TimeUnit.MILLISECONDS));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Writes through a temporary name, so the watcher only sees complete files.
+     */
+    private static void write(Path directory, String name, String... lines) throws Exception {
+        Path tmp = directory.resolve(name + ".tmp");
+        Files.write(tmp, Arrays.asList(lines), StandardCharsets.UTF_8);
+        Files.move(tmp, directory.resolve(name));
+    }
+
+    private static void deleteDirectory(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+}
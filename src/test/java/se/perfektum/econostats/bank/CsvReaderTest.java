@@ -0,0 +1,94 @@
+package se.perfektum.econostats.bank;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static se.perfektum.econostats.bank.LineCsvReader.transaction;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+
+public class CsvReaderTest {
+    private CsvReader csvReader = new LineCsvReader();
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("csv");
+    }
+
+    @After
+    public void deleteDirectory() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void directoryShouldEqualFilesReadOneByOneOrderedByDate() throws Exception {
+        write("b.csv", "2018-03-25;Rent", "2018-01-02;Ica", "2018-02-10;Telia");
+        write("a.csv", "2018-02-10;Netflix", "2018-01-25;Rent");
+        write("c.csv", "2018-02-10;Coop");
+        write("notes.txt", "2017-12-24;Not a csv file");
+
+        List<AccountTransaction> actual = csvReader.getAccountTransactionsFromDirectory(directory.toString(), null);
+
+        List<AccountTransaction> expected = new ArrayList<>();
+        for (String name : Arrays.asList("a.csv", "b.csv", "c.csv")) {
+            expected.addAll(csvReader.getAccountTransactionsFromFile(directory.resolve(name).toString()));
+        }
+        expected.sort(Comparator.comparing(AccountTransaction::getDate));
+        assertEquals(expected, actual);
+        // Transactions on the same date keep the order of the files
+        assertEquals(Arrays.asList(transaction("2018-01-02", "Ica"), transaction("2018-01-25", "Rent"), transaction("2018-02-10", "Netflix"),
+                transaction("2018-02-10", "Telia"), transaction("2018-02-10", "Coop"), transaction("2018-03-25", "Rent")), actual);
+    }
+
+    @Test
+    public void directoryShouldOnlyReadFilesMatchingGlob() throws Exception {
+        write("nordea-2018.csv", "2018-01-25;Rent");
+        write("other-2018.csv", "2018-01-02;Ica");
+
+        assertEquals(Arrays.asList(transaction("2018-01-25", "Rent")), csvReader.getAccountTransactionsFromDirectory(directory.toString(), "nordea*.csv"));
+    }
+
+    @Test
+    public void emptyDirectoryShouldGiveNoTransactions() throws Exception {
+        assertTrue(csvReader.getAccountTransactionsFromDirectory(directory.toString(), "").isEmpty());
+    }
+
+    @Test
+    public void failingFileShouldFailDirectory() throws Exception {
+        write("a.csv", "2018-01-25;Rent");
+        write("b.csv", "2018-01-02;Ica", "not a transaction");
+        write("c.csv", "2018-02-10;Coop");
+
+        try {
+            csvReader.getAccountTransactionsFromDirectory(directory.toString(), null);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals(String.format("Invalid line 'not a transaction' in '%s'", directory.resolve("b.csv")), e.getMessage());
+        }
+    }
+
+    private void write(String name, String... lines) throws Exception {
+        Files.write(directory.resolve(name), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
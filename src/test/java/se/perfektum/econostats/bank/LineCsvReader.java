@@ -0,0 +1,41 @@
+package se.perfektum.econostats.bank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import se.perfektum.econostats.dev.TestTransactions;
+import se.perfektum.econostats.domain.AccountTransaction;
+
+/**
+ * CsvReader of test files with one transaction per line of "date;header", so the generic CsvReader code can be tested without a bank format.
+ */
+public class LineCsvReader implements CsvReader {
+
+    @Override
+    public List<AccountTransaction> getAccountTransactionsFromFile(String filePath) throws Exception {
+        List<AccountTransaction> accountTransactions = new ArrayList<>();
+        readAccountTransactions(filePath, accountTransactions::add);
+        return accountTransactions;
+    }
+
+    @Override
+    public void readAccountTransactions(String filePath, Consumer<AccountTransaction> consumer) throws Exception {
+        for (String line : Files.readAllLines(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            String[] columns = line.split(";");
+            if (columns.length != 2) {
+                throw new IOException(String.format("Invalid line '%s' in '%s'", line, filePath));
+            }
+            consumer.accept(transaction(columns[0], columns[1]));
+        }
+    }
+
+    public static AccountTransaction transaction(String date, String header) {
+        return TestTransactions.transaction(LocalDate.parse(date), "-100.00", header);
+    }
+}
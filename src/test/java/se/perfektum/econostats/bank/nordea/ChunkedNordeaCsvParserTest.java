@@ -0,0 +1,79 @@
+package se.perfektum.econostats.bank.nordea;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+
+public class ChunkedNordeaCsvParserTest {
+    // Small enough to split the test files into several chunks
+    private static final long MIN_CHUNK_SIZE = 64;
+
+    private ChunkedNordeaCsvParser chunkedParser = new ChunkedNordeaCsvParser(4, MIN_CHUNK_SIZE);
+    private NordeaCsvReader csvReader = new NordeaCsvReader();
+
+    @Test
+    public void readCsvV1InChunksShouldEqualNordeaCsvReader() throws Exception {
+        assertSameTransactions(Paths.get("src/test/resources/test1.csv"));
+    }
+
+    @Test
+    public void readCsvV2InChunksShouldEqualNordeaCsvReader() throws Exception {
+        assertSameTransactions(Paths.get("src/test/resources/test2.csv"));
+    }
+
+    @Test
+    public void badRowInLaterChunkShouldGiveLineNumberInFile() throws Exception {
+        List<String> lines = Files.readAllLines(Paths.get("src/test/resources/test2.csv"), StandardCharsets.UTF_8);
+        List<String> withBadRow = new ArrayList<>(lines);
+        withBadRow.add(lines.get(1).replace("-439,00", "-43x,00"));
+        withBadRow.add(lines.get(2));
+        Path csvFile = Files.createTempFile("chunked", ".csv");
+        try {
+            Files.write(csvFile, withBadRow, StandardCharsets.UTF_8);
+            assertTrue(chunkedParser.getChunkBounds(csvFile).length > 3);
+
+            String expected = getFailure(() -> csvReader.readAccountTransactions(csvFile.toString(), at -> {
+            }));
+            String actual = getFailure(() -> chunkedParser.parse(csvFile));
+
+            assertTrue(expected, expected.contains(String.format("on line %d:", withBadRow.size() - 1)));
+            assertEquals(expected, actual);
+        } finally {
+            Files.deleteIfExists(csvFile);
+        }
+    }
+
+    private void assertSameTransactions(Path csvFile) throws Exception {
+        List<AccountTransaction> expected = new ArrayList<>();
+        csvReader.readAccountTransactions(csvFile.toString(), expected::add);
+
+        assertTrue(chunkedParser.getChunkBounds(csvFile).length > 2);
+        // AccountTransaction.equals does not include the stamps
+        assertEquals(expected, chunkedParser.parse(csvFile));
+    }
+
+    private static String getFailure(ThrowingRunnable runnable) throws Exception {
+        try {
+            runnable.run();
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+        fail("Expected a NumberFormatException");
+        return null;
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
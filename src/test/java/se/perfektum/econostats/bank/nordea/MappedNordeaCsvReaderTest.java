@@ -0,0 +1,56 @@
+package se.perfektum.econostats.bank.nordea;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import se.perfektum.econostats.configuration.NordeaProperties;
+import se.perfektum.econostats.domain.AccountTransaction;
+
+public class MappedNordeaCsvReaderTest {
+
+    @InjectMocks
+    MappedNordeaCsvReader mappedCsvReader;
+
+    @InjectMocks
+    NordeaCsvReader csvReader;
+
+    @Mock
+    NordeaProperties nordeaProperties;
+    private AutoCloseable closeable;
+
+    @Before
+    public void openMocks() {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @After
+    public void releaseMocks() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    public void readCsvV1ShouldEqualNordeaCsvReader() throws Exception {
+        assertSameTransactions("src/test/resources/test1.csv");
+    }
+
+    @Test
+    public void readCsvV2ShouldEqualNordeaCsvReader() throws Exception {
+        assertSameTransactions("src/test/resources/test2.csv");
+    }
+
+    private void assertSameTransactions(String csvFile) throws Exception {
+        List<AccountTransaction> expected = csvReader.getAccountTransactionsFromFile(csvFile);
+        List<AccountTransaction> actual = mappedCsvReader.getAccountTransactionsFromFile(csvFile);
+
+        // AccountTransaction.equals does not include the stamps
+        assertEquals(expected, actual);
+    }
+}
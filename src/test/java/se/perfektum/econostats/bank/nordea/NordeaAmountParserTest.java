@@ -0,0 +1,84 @@
+package se.perfektum.econostats.bank.nordea;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class NordeaAmountParserTest {
+
+    @Test
+    public void parseShouldHandleNordeaFormats() {
+        assertEquals(new BigDecimal("-439.00"), NordeaAmountParser.parse("-439,00"));
+        assertEquals(new BigDecimal("4511.21"), NordeaAmountParser.parse("4.511,21"));
+        assertEquals(new BigDecimal("-66.00"), NordeaAmountParser.parse("−66,00"));
+        assertEquals(new BigDecimal("66.00"), NordeaAmountParser.parse("66.00"));
+        assertEquals(new BigDecimal("66"), NordeaAmountParser.parse("66"));
+        assertEquals(new BigDecimal("1000"), NordeaAmountParser.parse("1.000"));
+        assertEquals(new BigDecimal("-1200.50"), NordeaAmountParser.parse(" -1 200,50 "));
+    }
+
+    @Test
+    public void parseShouldReturnNullForBlankValues() {
+        assertNull(NordeaAmountParser.parse(null));
+        assertNull(NordeaAmountParser.parse(""));
+        assertNull(NordeaAmountParser.parse("  "));
+    }
+
+    @Test
+    public void parseMinorUnitsShouldScaleToOre() {
+        assertEquals(-43900L, NordeaAmountParser.parseMinorUnits("-439,00"));
+        assertEquals(451121L, NordeaAmountParser.parseMinorUnits("4.511,21"));
+        assertEquals(6600L, NordeaAmountParser.parseMinorUnits("66"));
+        assertEquals(-6650L, NordeaAmountParser.parseMinorUnits("−66,5"));
+    }
+
+    @Test
+    public void parseBytesShouldMatchParseChars() {
+        String[] values = { "-439,00", "4.511,21", "−66,00", "66.00", "66", "1.000", " -1 200,50 ", "1\u00A0200,50", "\u00A0-66,00\u00A0", "\t+66,5\t", "",
+                "  ", "\u00A0", "1\u00A0\u00A0", "\u00A0\u00A01.000\u00A0", "12.345.678,9", "1,5\u00A0\u00A02" };
+        for (String value : values) {
+            assertEquals(value, NordeaAmountParser.parse(value), parseBytes(value));
+        }
+    }
+
+    @Test
+    public void parseBytesShouldRejectWhatParseCharsRejects() {
+        String[] values = { "12a", "-", "1-2", ",", "−", "1.2a", "1234567890123456789", "66€", "1−2", "−−1", "1\u00A0-2", ",\u00A05", "1\u00A0\u00A0x", "\u2212\u00A0" };
+        for (String value : values) {
+            assertEquals(value, getFailure(() -> NordeaAmountParser.parse(value)), getFailure(() -> parseBytes(value)));
+        }
+    }
+
+    /**
+     * Parses value from the middle of a larger array, as the csv readers do.
+     */
+    private static BigDecimal parseBytes(String value) {
+        byte[] bytes = ("x;" + value + ";x").getBytes(StandardCharsets.UTF_8);
+        return NordeaAmountParser.parse(bytes, 2, bytes.length - 2);
+    }
+
+    private static String getFailure(Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+        fail("Expected a NumberFormatException");
+        return null;
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseShouldRejectInvalidValues() {
+        NordeaAmountParser.parse("12a");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseMinorUnitsShouldRejectMoreThanTwoDecimals() {
+        NordeaAmountParser.parseMinorUnits("1,234");
+    }
+}
@@ -2,13 +2,22 @@ package se.perfektum.econostats.bank.nordea;
 
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -193,4 +202,46 @@ public class NordeaCsvReaderTest {
                                 .build()));
         // @formatter:on
     }
+
+    @Test
+    public void readAccountTransactionsShouldStreamSameRowsInOrder() throws Exception {
+        for (String csvFile : Arrays.asList("src/test/resources/test1.csv", "src/test/resources/test2.csv")) {
+            List<AccountTransaction> streamed = new ArrayList<>();
+            csvReader.readAccountTransactions(csvFile, streamed::add);
+
+            // AccountTransaction.equals does not include the stamps
+            List<AccountTransaction> expected = csvReader.getAccountTransactionsFromFile(csvFile);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, streamed);
+        }
+    }
+
+    @Test
+    public void corruptCacheEntryShouldBeParsedAgain() throws Exception {
+        Path cachePath = Files.createTempDirectory("cache");
+        try {
+            when(nordeaProperties.getCachePath()).thenReturn(cachePath.toString());
+            List<AccountTransaction> expected = new ArrayList<>();
+            csvReader.readAccountTransactions("src/test/resources/test2.csv", expected::add);
+
+            // AccountTransaction.equals does not include the stamps
+            assertEquals(expected, csvReader.getAccountTransactionsFromFile("src/test/resources/test2.csv"));
+
+            String key = new ParsedCsvCache(cachePath).getKey(Paths.get("src/test/resources/test2.csv"), CsvVersion.V2);
+            Path entry = cachePath.resolve(key + ".bin");
+            byte[] bytes = Files.readAllBytes(entry);
+            Files.write(entry, Arrays.copyOf(bytes, bytes.length / 2));
+
+            assertEquals(expected, csvReader.getAccountTransactionsFromFile("src/test/resources/test2.csv"));
+            // The corrupt entry is replaced by the parsed transactions
+            assertEquals(expected, new ParsedCsvCache(cachePath).get(key));
+        } finally {
+            try (Stream<Path> files = Files.list(cachePath)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(cachePath);
+        }
+    }
 }
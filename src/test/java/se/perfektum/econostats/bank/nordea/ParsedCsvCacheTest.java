@@ -0,0 +1,127 @@
+package se.perfektum.econostats.bank.nordea;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+
+public class ParsedCsvCacheTest {
+    private static final Path TEST_CSV_V2 = Paths.get("src/test/resources/test2.csv");
+
+    private NordeaCsvReader csvReader = new NordeaCsvReader();
+    private Path directory;
+    private ParsedCsvCache cache;
+
+    @Before
+    public void createCache() throws Exception {
+        directory = Files.createTempDirectory("cache");
+        cache = new ParsedCsvCache(directory);
+    }
+
+    @After
+    public void deleteCache() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void getShouldReturnStoredTransactions() throws Exception {
+        List<AccountTransaction> expected = read(TEST_CSV_V2);
+        String key = cache.getKey(TEST_CSV_V2, CsvVersion.V2);
+        assertNull(cache.get(key));
+
+        cache.put(key, expected);
+
+        // AccountTransaction.equals does not include the stamps
+        assertEquals(expected, cache.get(key));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(Arrays.asList(directory.resolve(key + ".bin")), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void changedFileShouldNotBeFoundInCache() throws Exception {
+        Path csvFile = directory.resolve("test2.csv");
+        Files.copy(TEST_CSV_V2, csvFile);
+        String key = cache.getKey(csvFile, CsvVersion.V2);
+        cache.put(key, read(csvFile));
+
+        List<String> lines = new ArrayList<>(Files.readAllLines(csvFile, StandardCharsets.UTF_8));
+        lines.set(1, lines.get(1).replace("-439,00", "-449,00"));
+        Files.write(csvFile, lines, StandardCharsets.UTF_8);
+        String changedKey = cache.getKey(csvFile, CsvVersion.V2);
+
+        assertNotEquals(key, changedKey);
+        assertNull(cache.get(changedKey));
+    }
+
+    @Test
+    public void keyShouldIncludeVersions() throws Exception {
+        assertNotEquals(cache.getKey(TEST_CSV_V2, CsvVersion.V1), cache.getKey(TEST_CSV_V2, CsvVersion.V2));
+        assertTrue(cache.getKey(TEST_CSV_V2, CsvVersion.V2).endsWith("-p" + NordeaCsvReader.PARSER_VERSION));
+    }
+
+    @Test
+    public void truncatedEntryShouldBeIgnored() throws Exception {
+        String key = storeTestFile();
+        Path entry = directory.resolve(key + ".bin");
+        byte[] bytes = Files.readAllBytes(entry);
+        Files.write(entry, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void entryWithInvalidCountShouldBeIgnored() throws Exception {
+        String key = storeTestFile();
+        Path entry = directory.resolve(key + ".bin");
+        byte[] bytes = Files.readAllBytes(entry);
+        // The count follows the magic number and the format version
+        ByteBuffer.wrap(bytes).putInt(8, Integer.MAX_VALUE);
+        Files.write(entry, bytes);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void entryWithTrailingDataShouldBeIgnored() throws Exception {
+        String key = storeTestFile();
+        Files.write(directory.resolve(key + ".bin"), new byte[] { 0 }, StandardOpenOption.APPEND);
+
+        assertNull(cache.get(key));
+    }
+
+    private String storeTestFile() throws Exception {
+        String key = cache.getKey(TEST_CSV_V2, CsvVersion.V2);
+        cache.put(key, read(TEST_CSV_V2));
+        return key;
+    }
+
+    private List<AccountTransaction> read(Path csvFile) {
+        List<AccountTransaction> ats = new ArrayList<>();
+        csvReader.readAccountTransactions(csvFile.toString(), ats::add);
+        return ats;
+    }
+}
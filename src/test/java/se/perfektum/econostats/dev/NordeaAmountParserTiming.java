@@ -0,0 +1,66 @@
+package se.perfektum.econostats.dev;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import se.perfektum.econostats.bank.nordea.NordeaAmountParser;
+
+/**
+ * Rough timing of NordeaAmountParser against the replaceAll parsing it replaced, as there is no benchmark setup in this project. Not a test, run it by
+ * hand after mvn test-compile:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes se.perfektum.econostats.dev.NordeaAmountParserTiming [amounts] [rounds]
+ * </pre>
+ *
+ * Each round parses the same amounts, in Nordea's formats, once per way of parsing. The first rounds warm up the JIT, so compare the last ones. Prints the
+ * nanoseconds per amount for each way of parsing.
+ */
+public class NordeaAmountParserTiming {
+    private static final String[] FORMATS = { "-%d,%02d", "%d,%02d", "−%d,%02d", "%d.%02d", "-1.%03d,%02d" };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(1);
+        String[] amounts = new String[count];
+        for (int i = 0; i < count; i++) {
+            amounts[i] = String.format(FORMATS[i % FORMATS.length], random.nextInt(1000), random.nextInt(100));
+        }
+        // The amounts as the byte fields of a memory mapped file, one after the other
+        byte[] bytes = String.join("", amounts).getBytes(StandardCharsets.UTF_8);
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            ends[i] = (i == 0 ? 0 : ends[i - 1]) + amounts[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            BigDecimal legacy = BigDecimal.ZERO;
+            for (String amount : amounts) {
+                legacy = legacy.add(new BigDecimal(amount.trim().replaceAll("\\.", "").replaceAll(",", ".").replaceAll("−", "-")));
+            }
+            long legacyTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            BigDecimal chars = BigDecimal.ZERO;
+            for (String amount : amounts) {
+                chars = chars.add(NordeaAmountParser.parse(amount));
+            }
+            long charsTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            BigDecimal fromBytes = BigDecimal.ZERO;
+            for (int i = 0; i < count; i++) {
+                fromBytes = fromBytes.add(NordeaAmountParser.parse(bytes, i == 0 ? 0 : ends[i - 1], ends[i]));
+            }
+            long bytesTime = System.nanoTime() - start;
+
+            // The sums are printed so the parsing can't be optimized away. The legacy sum differs, as it reads "66.00" as 6600.
+            System.out.println(String.format("Round %d: replaceAll %.1f ns, parse(CharSequence) %.1f ns, parse(byte[]) %.1f ns per amount (sums %s, %s, %s)", round,
+                    (double) legacyTime / count, (double) charsTime / count, (double) bytesTime / count, legacy, chars, fromBytes));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package se.perfektum.econostats.dev;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+/**
+ * Transactions and payee filters shared by the tests.
+ */
+public final class TestTransactions {
+    private static final String[] HEADERS = { "Telia", "ICA Kvantum", "Coop Bank", "Spotify", "ICA Nära" };
+
+    private TestTransactions() {
+    }
+
+    public static AccountTransaction transaction(LocalDate date, String amount, String header) {
+        return new AccountTransaction.Builder().date(date).amount(new BigDecimal(amount)).header(header).build();
+    }
+
+    /**
+     * @return a transaction of -100.00 on 2018-01-01
+     */
+    public static AccountTransaction transaction(String header) {
+        return transaction(LocalDate.of(2018, 1, 1), "-100.00", header);
+    }
+
+    /**
+     * @return one transaction a day from 2016-01-01 plus from days, all with different amounts, cycling through payees matched by {@link #filters()}
+     */
+    public static List<AccountTransaction> transactions(int from, int count) {
+        List<AccountTransaction> ats = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            ats.add(new AccountTransaction.Builder().date(LocalDate.of(2016, 1, 1).plusDays(i)).amount(BigDecimal.valueOf(-i * 101L, 2)).header(HEADERS[i % HEADERS.length])
+                    .build());
+        }
+        return ats;
+    }
+
+    /**
+     * @return a phone bill and a grocery bill every month of the years
+     */
+    public static List<AccountTransaction> monthlyBills(int... years) {
+        List<AccountTransaction> ats = new ArrayList<>();
+        for (int year : years) {
+            for (int month = 1; month <= 12; month++) {
+                ats.add(transaction(LocalDate.of(year, month, 5), "-" + (200 + month), "Telia"));
+                ats.add(transaction(LocalDate.of(year, month, 9), "-" + (1000 + year + month) + ".50", "ICA Kvantum"));
+            }
+        }
+        return ats;
+    }
+
+    public static PayeeFilter filter(String alias, String... payees) {
+        return new PayeeFilter(Arrays.asList(payees), new ArrayList<>(), alias, true);
+    }
+
+    /**
+     * @return Phone for Telia and Food for ICA and Coop, but not Coop Bank
+     */
+    public static List<PayeeFilter> filters() {
+        return Arrays.asList(filter("Phone", "telia"), new PayeeFilter(Arrays.asList("ica", "coop"), Arrays.asList("Coop Bank"), "Food", true));
+    }
+}
@@ -0,0 +1,53 @@
+package se.perfektum.econostats.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.dev.TestTransactions;
+
+public class ImmutableAccountTransactionTest {
+
+    private static AccountTransaction transaction(String amount, String header) {
+        AccountTransaction at = TestTransactions.transaction(LocalDate.of(2018, 8, 28), amount, header);
+        at.setSender("");
+        at.setCurrency("SEK");
+        at.setStampInserted(LocalDateTime.now());
+        return at;
+    }
+
+    @Test
+    public void shouldBeConsistentWithAccountTransaction() {
+        AccountTransaction at = transaction("-67.00", "Autogiro FRISKTANDV");
+        ImmutableAccountTransaction immutable = ImmutableAccountTransaction.of(at);
+
+        assertEquals(at.hashCode(), immutable.hashCode());
+        assertEquals(at, immutable.toAccountTransaction());
+        assertEquals(ImmutableAccountTransaction.fingerprint(at), immutable.getFingerprint());
+    }
+
+    @Test
+    public void equalTransactionsShouldHaveEqualFingerprints() {
+        ImmutableAccountTransaction first = ImmutableAccountTransaction.of(transaction("-67.00", "Autogiro FRISKTANDV"));
+        ImmutableAccountTransaction second = ImmutableAccountTransaction.of(transaction("-67.00", "Autogiro FRISKTANDV"));
+
+        assertEquals(first, second);
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+    }
+
+    @Test
+    public void fingerprintShouldFollowEquals() {
+        ImmutableAccountTransaction reference = ImmutableAccountTransaction.of(transaction("-67.00", "Autogiro FRISKTANDV"));
+        ImmutableAccountTransaction otherScale = ImmutableAccountTransaction.of(transaction("-67", "Autogiro FRISKTANDV"));
+        ImmutableAccountTransaction otherHeader = ImmutableAccountTransaction.of(transaction("-67.00", "Autogiro FOLKSAM"));
+
+        assertNotEquals(reference, otherScale);
+        assertNotEquals(reference.getFingerprint(), otherScale.getFingerprint());
+        assertNotEquals(reference, otherHeader);
+        assertNotEquals(reference.getFingerprint(), otherHeader.getFingerprint());
+    }
+}
@@ -0,0 +1,44 @@
+package se.perfektum.econostats.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StringPoolTest {
+
+    @Test
+    public void equalValuesShouldShareInstanceAndId() {
+        StringPool pool = new StringPool();
+        String first = new String("Autogiro Telia");
+        String second = new String("Autogiro Telia");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertEquals(pool.idOf(first), pool.idOf(second));
+        assertNotEquals(pool.idOf(first), pool.idOf("SEK"));
+        assertNull(pool.intern(null));
+        assertEquals(StringPool.NO_ID, pool.idOf(null));
+    }
+
+    @Test
+    public void lowerCaseShouldBeCachedPerId() {
+        StringPool pool = new StringPool();
+        int id = pool.idOf("Autogiro TELIA");
+
+        assertEquals("autogiro telia", pool.get(pool.lowerCaseIdOf(id)));
+        assertSame(pool.toLowerCase("Autogiro TELIA"), pool.toLowerCase("autogiro telia"));
+        assertEquals(pool.idOf("sek"), pool.lowerCaseIdOf(pool.idOf("sek")));
+    }
+
+    @Test
+    public void poolShouldGrow() {
+        StringPool pool = new StringPool();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("Payee " + i, pool.get(pool.idOf("Payee " + i)));
+        }
+        assertEquals("payee 0", pool.toLowerCase("Payee 0"));
+    }
+}
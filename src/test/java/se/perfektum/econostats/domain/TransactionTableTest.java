@@ -0,0 +1,87 @@
+package se.perfektum.econostats.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TransactionTableTest {
+
+    @Test
+    public void rowsShouldRoundTrip() {
+        AccountTransaction at = new AccountTransaction.Builder().date(LocalDate.of(2019, 3, 25))
+                .amount(new BigDecimal("-439.50"))
+                .header("Kortköp 190323 ICA")
+                .category("Livsmedel")
+                .stampInserted(LocalDateTime.of(2019, 3, 26, 12, 30, 15, 123456789))
+                .build();
+        TransactionTable table = TransactionTable.of(Arrays.asList(at));
+
+        assertEquals(1, table.size());
+        assertEquals(at, table.get(0));
+        assertEquals(-43950L, table.getAmountMinorUnits(0));
+        assertNull(table.getBalance(0));
+        assertNull(table.getSender(0));
+        assertEquals(at.getStampInserted(), table.get(0).getStampInserted());
+    }
+
+    @Test
+    public void textShouldBePooled() {
+        TransactionTable table = new TransactionTable();
+        for (int i = 0; i < 100; i++) {
+            table.add(new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 1).plusDays(i)).amount(BigDecimal.TEN).header("Netflix").currency("SEK").build());
+        }
+
+        assertEquals(table.getHeaderId(0), table.getHeaderId(99));
+        assertSame(table.getHeader(0), table.getHeader(99));
+        assertEquals(StringPool.getInstance().idOf("SEK"), table.getCurrencyId(50));
+    }
+
+    @Test
+    public void concatDistinctShouldKeepOrderAndDropDuplicates() {
+        AccountTransaction first = new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 1)).amount(new BigDecimal("10.00")).header("A").build();
+        AccountTransaction second = new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 2)).amount(new BigDecimal("20.00")).header("B").build();
+        AccountTransaction third = new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 3)).amount(new BigDecimal("30.00")).header("C").build();
+
+        TransactionTable merged = TransactionTable.concatDistinct(TransactionTable.of(Arrays.asList(third, first)), TransactionTable.of(Arrays.asList(first, second)));
+
+        List<AccountTransaction> expected = Arrays.asList(third, first, second);
+        assertEquals(expected, merged.asList());
+    }
+
+    @Test
+    public void amountsShouldBeComparedByValue() {
+        AccountTransaction whole = new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 1)).amount(new BigDecimal("67")).header("A").build();
+        AccountTransaction decimals = new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 1)).amount(new BigDecimal("67.00")).header("A").build();
+        TransactionTable table = TransactionTable.of(Arrays.asList(whole, decimals));
+
+        assertNotEquals(whole, decimals);
+        assertTrue(table.rowEquals(0, table, 1));
+        assertEquals(table.rowHashCode(0), table.rowHashCode(1));
+        assertEquals(decimals, table.get(0));
+    }
+
+    @Test
+    public void amountWithMoreThanTwoDecimalsShouldBeRejected() {
+        TransactionTable table = new TransactionTable();
+        try {
+            table.add(new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 1)).amount(new BigDecimal("10.005")).build());
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, table.size());
+        }
+
+        table.add(new AccountTransaction.Builder().date(LocalDate.of(2019, 1, 1)).amount(new BigDecimal("10.000")).build());
+        assertEquals(new BigDecimal("10.00"), table.getAmount(0));
+    }
+}
@@ -0,0 +1,77 @@
+package se.perfektum.econostats.matching;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static se.perfektum.econostats.dev.TestTransactions.filter;
+import static se.perfektum.econostats.dev.TestTransactions.filters;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class PayeeMatcherTest {
+
+    @Test
+    public void matchShouldFindOverlappingPayees() {
+        PayeeMatcher matcher = new PayeeMatcher(Arrays.asList(filter("He", "he"), filter("She", "she"), filter("His", "his"), filter("Hers", "hers")));
+
+        assertArrayEquals(new int[] { 0, 1, 3 }, matcher.match("ushers"));
+        assertArrayEquals(new int[] { 2 }, matcher.match("this"));
+        assertArrayEquals(new int[0], matcher.match("xyz"));
+    }
+
+    @Test
+    public void matchShouldIgnoreCase() {
+        PayeeMatcher matcher = new PayeeMatcher(Arrays.asList(filter("ICA", "ica"), filter("Telia", "TELIA")));
+
+        assertArrayEquals(new int[] { 0 }, matcher.match("ICA Kvantum Malmborgs"));
+        assertArrayEquals(new int[] { 1 }, matcher.match("Autogiro telia sverige"));
+    }
+
+    @Test
+    public void matchShouldFindFilterWithAnyMatchingPayee() {
+        PayeeMatcher matcher = new PayeeMatcher(Arrays.asList(filter("Food", "ica", "coop", "willys"), filter("Coop bank", "coop bank")));
+
+        assertArrayEquals(new int[] { 0 }, matcher.match("Willys Hemma"));
+        assertArrayEquals(new int[] { 0, 1 }, matcher.match("Coop Bank ränta"));
+    }
+
+    @Test
+    public void emptyPayeeShouldMatchEverything() {
+        PayeeMatcher matcher = new PayeeMatcher(Arrays.asList(filter("Telia", "telia"), filter("All", "")));
+
+        assertArrayEquals(new int[] { 1 }, matcher.match("Spotify"));
+        assertArrayEquals(new int[] { 1 }, matcher.match(null));
+    }
+
+    @Test
+    public void matcherWithoutFiltersShouldMatchNothing() {
+        PayeeMatcher matcher = new PayeeMatcher(Collections.emptyList());
+
+        assertArrayEquals(new int[0], matcher.match("Telia"));
+    }
+
+    @Test
+    public void matchShouldBeCachedPerHeaderIgnoringCase() {
+        PayeeMatcher matcher = new PayeeMatcher(Arrays.asList(filter("ICA", "ica")));
+
+        int[] first = matcher.match("ICA Kvantum");
+        assertSame(first, matcher.match("ica kvantum"));
+        assertSame(first, matcher.match("ICA Kvantum"));
+        matcher.match("Telia");
+        assertEquals(2, matcher.getCachedHeaderCount());
+    }
+
+    @Test
+    public void ofShouldShareMatcherUntilFiltersChange() {
+        PayeeMatcher matcher = PayeeMatcher.of(filters());
+
+        assertSame(matcher, PayeeMatcher.of(filters()));
+        PayeeMatcher edited = PayeeMatcher.of(Arrays.asList(filter("Phone", "telia", "tele2")));
+        assertNotSame(matcher, edited);
+        assertSame(edited, PayeeMatcher.of(Arrays.asList(filter("Phone", "telia", "tele2"))));
+    }
+}
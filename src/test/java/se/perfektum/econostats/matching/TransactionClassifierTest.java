@@ -0,0 +1,54 @@
+package se.perfektum.econostats.matching;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static se.perfektum.econostats.dev.TestTransactions.transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+public class TransactionClassifierTest {
+
+    @Test
+    public void classifyShouldPutEachTransactionInOneBucket() {
+        PayeeFilter food = new PayeeFilter(Arrays.asList("ica", "coop"), Arrays.asList("Coop Bank"), "Food", true);
+        PayeeFilter phone = new PayeeFilter(Arrays.asList("telia"), new ArrayList<>(), "Phone", true);
+        TransactionClassifier classifier = new TransactionClassifier(Arrays.asList(food, phone));
+        AccountTransaction ica = transaction("ICA Kvantum");
+        AccountTransaction coopBank = transaction("Coop Bank");
+        AccountTransaction telia = transaction("Telia");
+        AccountTransaction spotify = transaction("Spotify");
+        AccountTransaction coop = transaction("Coop Konsum");
+        List<AccountTransaction> transactions = Arrays.asList(ica, coopBank, telia, spotify, coop);
+
+        Classification classification = classifier.classify(transactions);
+
+        assertEquals(Arrays.asList(coopBank), classification.getExcluded());
+        assertEquals(Arrays.asList(ica, telia, coop), classification.getMatched());
+        assertArrayEquals(new int[] { 0 }, classification.getMatchingFilters(0));
+        assertArrayEquals(new int[] { 1 }, classification.getMatchingFilters(1));
+        assertEquals(Arrays.asList(ica, coop), classification.getMatched(0));
+        assertEquals(Arrays.asList(telia), classification.getMatched(1));
+        assertEquals(Arrays.asList(spotify), classification.getUnmatched());
+        assertEquals(5, transactions.size());
+    }
+
+    @Test
+    public void classifyShouldMatchTransactionByAllMatchingFilters() {
+        PayeeFilter coop = new PayeeFilter(Arrays.asList("coop"), null, "Coop", true);
+        PayeeFilter bank = new PayeeFilter(Arrays.asList("bank"), null, "Bank", true);
+        TransactionClassifier classifier = new TransactionClassifier(Arrays.asList(coop, bank));
+
+        Classification classification = classifier.classify(Arrays.asList(transaction("Coop Bank")));
+
+        assertArrayEquals(new int[] { 0, 1 }, classification.getMatchingFilters(0));
+        assertEquals(Collections.emptyList(), classification.getUnmatched());
+    }
+}
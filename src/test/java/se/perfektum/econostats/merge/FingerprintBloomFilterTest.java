@@ -0,0 +1,55 @@
+package se.perfektum.econostats.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static se.perfektum.econostats.dev.TestTransactions.transactions;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.utils.JsonUtils;
+
+public class FingerprintBloomFilterTest {
+
+    @Test
+    public void filterShouldHaveNoFalseNegatives() {
+        List<AccountTransaction> stored = transactions(0, 10000);
+        FingerprintBloomFilter filter = FingerprintBloomFilter.of(stored, 10000, 0.01);
+
+        stored.forEach(at -> assertTrue(filter.mightContain(at)));
+        assertEquals(10000, filter.getTransactionCount());
+    }
+
+    @Test
+    public void falsePositiveRateShouldBeNearConfigured() {
+        FingerprintBloomFilter filter = FingerprintBloomFilter.of(transactions(0, 10000), 10000, 0.01);
+
+        long falsePositives = transactions(10000, 10000).stream().filter(filter::mightContain).count();
+
+        assertTrue("False positives: " + falsePositives, falsePositives < 200);
+    }
+
+    @Test
+    public void filterShouldSurviveWriteAndRead() throws Exception {
+        List<AccountTransaction> stored = transactions(0, 1000);
+        FingerprintBloomFilter filter = FingerprintBloomFilter.of(stored, 1000, 0.01);
+        filter.setHistoryDigest(JsonUtils.digest(JsonUtils.convertObjectsToJson(stored, "accountTransactions")));
+        Path file = Files.createTempFile("transactions", ".bloom");
+        file.toFile().deleteOnExit();
+
+        filter.writeTo(file);
+        FingerprintBloomFilter read = FingerprintBloomFilter.readFrom(file);
+
+        assertEquals(filter.getTransactionCount(), read.getTransactionCount());
+        assertEquals(filter.getHistoryDigest(), read.getHistoryDigest());
+        assertEquals(filter.getFalsePositiveRate(), read.getFalsePositiveRate(), 0);
+        stored.forEach(at -> assertTrue(read.mightContain(at)));
+        assertEquals(transactions(1000, 1000).stream().filter(filter::mightContain).count(), transactions(1000, 1000).stream().filter(read::mightContain).count());
+        assertFalse(read.isSaturated());
+    }
+}
@@ -0,0 +1,101 @@
+package se.perfektum.econostats.merge;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.dev.TestTransactions;
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.TransactionTable;
+
+public class TransactionMergerTest {
+
+    private final TransactionMerger transactionMerger = new TransactionMerger();
+
+    private static AccountTransaction transaction(int day, String amount) {
+        return TestTransactions.transaction(LocalDate.of(2018, 9, day), amount, "Swish");
+    }
+
+    @Test
+    public void mergeShouldKeepGenuineDuplicates() {
+        List<AccountTransaction> stored = Arrays.asList(transaction(27, "-100.00"));
+        List<AccountTransaction> imported = Arrays.asList(transaction(27, "-100.00"), transaction(28, "10.00"), transaction(28, "-10.00"), transaction(28, "10.00"));
+
+        MergeResult<List<AccountTransaction>> result = transactionMerger.merge(imported, stored);
+
+        assertEquals(Arrays.asList(transaction(27, "-100.00"), transaction(28, "10.00"), transaction(28, "-10.00"), transaction(28, "10.00")), result.getTransactions());
+        assertEquals(3, result.getNewCount());
+        assertEquals(1, result.getKnownCount());
+        assertEquals(0, result.getAmbiguousCount());
+    }
+
+    @Test
+    public void mergeShouldReportAmbiguousTransactions() {
+        List<AccountTransaction> stored = Arrays.asList(transaction(28, "10.00"), transaction(28, "-10.00"));
+        List<AccountTransaction> imported = Arrays.asList(transaction(28, "10.00"), transaction(28, "10.00"), transaction(28, "-10.00"), transaction(29, "5.00"));
+
+        MergeResult<List<AccountTransaction>> result = transactionMerger.merge(imported, stored);
+
+        assertEquals(Arrays.asList(transaction(28, "10.00"), transaction(28, "-10.00"), transaction(28, "10.00"), transaction(29, "5.00")), result.getTransactions());
+        assertEquals(1, result.getNewCount());
+        assertEquals(2, result.getKnownCount());
+        assertEquals(1, result.getAmbiguousCount());
+    }
+
+    @Test
+    public void reimportShouldAddNothing() {
+        List<AccountTransaction> stored = Arrays.asList(transaction(28, "10.00"), transaction(28, "10.00"), transaction(29, "5.00"));
+
+        MergeResult<TransactionTable> result = transactionMerger.merge(TransactionTable.of(stored), TransactionTable.of(stored));
+
+        assertEquals(stored, result.getTransactions().asList());
+        assertEquals(0, result.getAddedCount());
+        assertEquals(3, result.getKnownCount());
+    }
+
+    @Test
+    public void mergeSortedShouldKeepHistorySorted() {
+        List<AccountTransaction> stored = Arrays.asList(transaction(1, "-1.00"), transaction(20, "-2.00"), transaction(27, "-3.00"), transaction(28, "-4.00"));
+        List<AccountTransaction> imported = Arrays.asList(transaction(29, "5.00"), transaction(28, "-4.00"), transaction(27, "6.00"), transaction(27, "-3.00"));
+
+        MergeResult<List<AccountTransaction>> result = transactionMerger.mergeSorted(imported, stored);
+
+        assertEquals(Arrays.asList(transaction(1, "-1.00"), transaction(20, "-2.00"), transaction(27, "-3.00"), transaction(27, "6.00"), transaction(28, "-4.00"),
+                transaction(29, "5.00")), result.getTransactions());
+        assertEquals(2, result.getNewCount());
+        assertEquals(2, result.getKnownCount());
+    }
+
+    @Test
+    public void mergeSortedShouldSortUnsortedHistory() {
+        List<AccountTransaction> stored = Arrays.asList(transaction(28, "-4.00"), transaction(1, "-1.00"));
+        List<AccountTransaction> imported = Arrays.asList(transaction(2, "7.00"), transaction(1, "-1.00"));
+
+        MergeResult<List<AccountTransaction>> result = transactionMerger.mergeSorted(imported, stored);
+
+        assertEquals(Arrays.asList(transaction(1, "-1.00"), transaction(2, "7.00"), transaction(28, "-4.00")), result.getTransactions());
+        assertEquals(1, result.getNewCount());
+        assertEquals(1, result.getKnownCount());
+    }
+
+    @Test
+    public void mergeSortedWithFilterShouldGiveSameResult() {
+        List<AccountTransaction> stored = Arrays.asList(transaction(1, "-1.00"), transaction(20, "-2.00"), transaction(27, "-3.00"), transaction(28, "-4.00"));
+        List<AccountTransaction> imported = Arrays.asList(transaction(29, "5.00"), transaction(28, "-4.00"), transaction(2, "6.00"), transaction(27, "-3.00"),
+                transaction(27, "-3.00"));
+        FingerprintBloomFilter filter = FingerprintBloomFilter.of(stored, 100, 0.01);
+
+        MergeResult<List<AccountTransaction>> expected = transactionMerger.mergeSorted(imported, stored);
+        MergeResult<List<AccountTransaction>> actual = transactionMerger.mergeSorted(imported, stored, filter);
+
+        assertEquals(expected.getTransactions(), actual.getTransactions());
+        assertEquals(Arrays.asList(transaction(2, "6.00"), transaction(27, "-3.00"), transaction(29, "5.00")), actual.getAddedTransactions());
+        assertEquals(2, actual.getNewCount());
+        assertEquals(2, actual.getKnownCount());
+        assertEquals(1, actual.getAmbiguousCount());
+    }
+}
@@ -0,0 +1,36 @@
+package se.perfektum.econostats.spreadsheet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+import org.odftoolkit.odfdom.type.Color;
+import org.odftoolkit.simple.SpreadsheetDocument;
+import org.odftoolkit.simple.style.StyleTypeDefinitions.FontStyle;
+import org.odftoolkit.simple.style.StyleTypeDefinitions.HorizontalAlignmentType;
+import org.odftoolkit.simple.table.Cell;
+import org.odftoolkit.simple.table.Table;
+
+public class CellStylesTest {
+    private static final Color GREY = new Color(200, 200, 200);
+
+    @Test
+    public void sameCombination_sharesStyle() throws Exception {
+        Table table = SpreadsheetDocument.newSpreadsheetDocument().getSheetByIndex(0);
+        CellStyles styles = new CellStyles();
+
+        Cell first = table.getCellByPosition(0, 0);
+        Cell second = table.getCellByPosition(1, 3);
+        Cell third = table.getCellByPosition(2, 5);
+        styles.apply(first, true, GREY, 9, HorizontalAlignmentType.CENTER);
+        styles.apply(second, true, GREY, 9, HorizontalAlignmentType.CENTER);
+        styles.apply(third, false, GREY, 9, HorizontalAlignmentType.CENTER);
+
+        assertEquals(2, styles.size());
+        assertEquals(first.getCellStyleName(), second.getCellStyleName());
+        assertNotEquals(first.getCellStyleName(), third.getCellStyleName());
+        assertEquals(HorizontalAlignmentType.CENTER, second.getHorizontalAlignmentType());
+        assertEquals(GREY.toString(), second.getCellBackgroundColor().toString());
+        assertEquals(FontStyle.BOLD, second.getFont().getFontStyle());
+    }
+}
@@ -0,0 +1,76 @@
+package se.perfektum.econostats.spreadsheet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.odftoolkit.simple.SpreadsheetDocument;
+import org.odftoolkit.simple.table.Cell;
+import org.odftoolkit.simple.table.Table;
+
+/**
+ * Compares spreadsheets sheet by sheet, as they are shown
+ */
+final class SpreadsheetAssert {
+    private static final int ROW_COUNT = 15;
+
+    private SpreadsheetAssert() {
+    }
+
+    /**
+     * Compares with the document as saved, as the ODF Toolkit does not always read back styles of a document it has just built
+     */
+    static SpreadsheetDocument reload(SpreadsheetDocument document) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.save(out);
+        return SpreadsheetDocument.loadDocument(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    static void assertSameSheets(SpreadsheetDocument expected, SpreadsheetDocument actual) {
+        assertEquals(expected.getSheetCount(), actual.getSheetCount());
+        for (int s = 0; s < expected.getSheetCount(); s++) {
+            Table expectedSheet = expected.getSheetByIndex(s);
+            Table actualSheet = actual.getSheetByIndex(s);
+            assertEquals(expectedSheet.getTableName(), actualSheet.getTableName());
+            // Up to the total column, as reading beyond the last column makes the ODF Toolkit append columns
+            int columnCount = getTotalColumn(expectedSheet) + 1;
+            assertEquals("Total", actualSheet.getCellByPosition(columnCount - 1, 0).getStringValue());
+            for (int column = 0; column < columnCount; column++) {
+                assertEquals(expectedSheet.getColumnByIndex(column).getWidth(), actualSheet.getColumnByIndex(column).getWidth(), 0.01);
+                for (int row = 0; row < ROW_COUNT; row++) {
+                    assertSameCell(expectedSheet.getCellByPosition(column, row), actualSheet.getCellByPosition(column, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * A new sheet has a few columns from the start, so the total column is not always the last one
+     */
+    private static int getTotalColumn(Table sheet) {
+        for (int column = 0; column < sheet.getColumnCount(); column++) {
+            if ("Total".equals(sheet.getCellByPosition(column, 0).getStringValue())) {
+                return column;
+            }
+        }
+        throw new AssertionError(String.format("No total column in sheet %s", sheet.getTableName()));
+    }
+
+    private static void assertSameCell(Cell expected, Cell actual) {
+        String position = expected.getTable().getTableName() + "!" + expected.getColumnIndex() + ":" + expected.getRowIndex();
+        assertEquals(position, expected.getValueType(), actual.getValueType());
+        assertEquals(position, expected.getDisplayText(), actual.getDisplayText());
+        assertEquals(position, expected.getFormula(), actual.getFormula());
+        if (expected.getValueType() == null) {
+            assertEquals(position, "", actual.getCellStyleName());
+            return;
+        }
+        assertFalse(position, expected.getFormula() == null && actual.getStringValue() == null);
+        assertEquals(position, expected.getCellBackgroundColor().toString(), actual.getCellBackgroundColor().toString());
+        assertEquals(position, expected.getHorizontalAlignmentType(), actual.getHorizontalAlignmentType());
+        assertEquals(position, expected.getFont().getFontStyle(), actual.getFont().getFontStyle());
+        assertEquals(position, expected.getFont().getSize(), actual.getFont().getSize(), 0.01);
+    }
+}
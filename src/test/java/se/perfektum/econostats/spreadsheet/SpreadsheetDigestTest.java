@@ -0,0 +1,84 @@
+package se.perfektum.econostats.spreadsheet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static se.perfektum.econostats.dev.TestTransactions.filters;
+import static se.perfektum.econostats.dev.TestTransactions.transaction;
+import static se.perfektum.econostats.dev.TestTransactions.transactions;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+
+public class SpreadsheetDigestTest {
+
+    @Test
+    public void sameInputsShouldGiveSameDigest() {
+        assertEquals(SpreadsheetDigest.of(transactions(0, 100), filters()), SpreadsheetDigest.of(transactions(0, 100), filters()));
+    }
+
+    @Test
+    public void stampsShouldNotChangeDigest() {
+        List<AccountTransaction> stamped = transactions(0, 100);
+        stamped.get(3).setStampChanged(LocalDateTime.now());
+
+        assertEquals(SpreadsheetDigest.of(transactions(0, 100), filters()), SpreadsheetDigest.of(stamped, filters()));
+    }
+
+    @Test
+    public void changedTransactionsShouldChangeDigest() {
+        List<AccountTransaction> edited = transactions(0, 100);
+        edited.get(3).setAmount(new BigDecimal("-1.00"));
+        List<AccountTransaction> added = transactions(0, 100);
+        added.add(transaction(LocalDate.of(2020, 1, 1), "-5", "Telia"));
+
+        SpreadsheetDigest digest = SpreadsheetDigest.of(transactions(0, 100), filters());
+
+        assertNotEquals(digest, SpreadsheetDigest.of(edited, filters()));
+        assertNotEquals(digest, SpreadsheetDigest.of(added, filters()));
+    }
+
+    @Test
+    public void changedFiltersShouldChangeDigest() {
+        List<PayeeFilter> renamed = filters();
+        renamed.get(0).setAlias("Mobile");
+        List<PayeeFilter> moved = filters();
+        moved.get(1).setPayees(Arrays.asList("ica"));
+        moved.get(1).setExcludedPayees(Arrays.asList("coop", "Coop Bank"));
+
+        SpreadsheetDigest digest = SpreadsheetDigest.of(transactions(0, 100), filters());
+
+        assertNotEquals(digest, SpreadsheetDigest.of(transactions(0, 100), renamed));
+        assertNotEquals(digest, SpreadsheetDigest.of(transactions(0, 100), moved));
+        assertNotEquals(digest, SpreadsheetDigest.of(transactions(0, 100), filters().subList(0, 1)));
+    }
+
+    @Test
+    public void digestShouldBeReadAsWritten() throws Exception {
+        SpreadsheetDigest digest = SpreadsheetDigest.of(transactions(0, 100), filters());
+        Path dir = Files.createTempDirectory("digest");
+        Path file = dir.resolve("recurringTransactions.ods.sha256");
+        try {
+            assertNull(SpreadsheetDigest.readFrom(file));
+            digest.writeTo(file);
+
+            SpreadsheetDigest read = SpreadsheetDigest.readFrom(file);
+
+            assertEquals(digest, read);
+            assertEquals(64, read.toString().length());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
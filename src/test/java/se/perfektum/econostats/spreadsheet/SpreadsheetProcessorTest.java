@@ -1,12 +1,23 @@
 package se.perfektum.econostats.spreadsheet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static se.perfektum.econostats.dev.TestTransactions.filters;
+import static se.perfektum.econostats.dev.TestTransactions.monthlyBills;
+import static se.perfektum.econostats.dev.TestTransactions.transaction;
+import static se.perfektum.econostats.spreadsheet.SpreadsheetAssert.assertSameSheets;
+import static se.perfektum.econostats.spreadsheet.SpreadsheetAssert.reload;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
+import org.odftoolkit.odfdom.dom.element.table.TableTableElement;
+import org.odftoolkit.odfdom.dom.style.OdfStyleFamily;
 import org.odftoolkit.simple.SpreadsheetDocument;
 import org.odftoolkit.simple.table.Cell;
 import org.odftoolkit.simple.table.Table;
@@ -14,6 +25,7 @@ import org.odftoolkit.simple.table.Table;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import se.perfektum.econostats.aggregation.RollupStore;
 import se.perfektum.econostats.domain.AccountTransaction;
 import se.perfektum.econostats.domain.PayeeFilter;
 import se.perfektum.econostats.utils.JsonUtils;
@@ -56,6 +68,73 @@ public class SpreadsheetProcessorTest {
         assertEquals(15, sheet2018.getRowCount());
     }
 
+    @Test
+    public void updateSpreadsheet_onlyChangedYearReplaced() throws Exception {
+        List<AccountTransaction> stored = monthlyBills(2017, 2018, 2019);
+        SpreadsheetDocument previous = reload(spreadsheetProcessor.createSpreadsheet(rollups(stored), filters()));
+        TableTableElement sheet2017 = previous.getSheetByIndex(0).getOdfElement();
+        TableTableElement sheet2018 = previous.getSheetByIndex(1).getOdfElement();
+        TableTableElement sheet2019 = previous.getSheetByIndex(2).getOdfElement();
+        List<AccountTransaction> merged = new ArrayList<>(stored);
+        merged.add(transaction(LocalDate.of(2019, 12, 24), "-99.90", "Coop Forum"));
+
+        SpreadsheetDocument updated = spreadsheetProcessor.updateSpreadsheet(previous, rollups(merged), filters());
+
+        assertSame(sheet2017, updated.getSheetByIndex(0).getOdfElement());
+        assertSame(sheet2018, updated.getSheetByIndex(1).getOdfElement());
+        assertNotSame(sheet2019, updated.getSheetByIndex(2).getOdfElement());
+        assertSameSheets(reload(spreadsheetProcessor.createSpreadsheet(merged, filters())), reload(updated));
+    }
+
+    @Test
+    public void updateSpreadsheet_yearsAddedAndRemoved() throws Exception {
+        SpreadsheetDocument previous = reload(spreadsheetProcessor.createSpreadsheet(rollups(monthlyBills(2017, 2018)), filters()));
+        List<AccountTransaction> stored = monthlyBills(2016, 2018, 2020);
+
+        SpreadsheetDocument updated = spreadsheetProcessor.updateSpreadsheet(previous, rollups(stored), filters());
+
+        assertSameSheets(reload(spreadsheetProcessor.createSpreadsheet(stored, filters())), reload(updated));
+    }
+
+    @Test
+    public void updateSpreadsheet_notCreatedByProcessor_allSheetsReplaced() throws Exception {
+        List<AccountTransaction> stored = monthlyBills(2017, 2018);
+        SpreadsheetDocument previous = new StaxSpreadsheetProcessor().createSpreadsheet(stored, filters());
+
+        SpreadsheetDocument updated = spreadsheetProcessor.updateSpreadsheet(previous, rollups(stored), filters());
+
+        assertSameSheets(reload(spreadsheetProcessor.createSpreadsheet(stored, filters())), reload(updated));
+    }
+
+    @Test
+    public void updateSpreadsheet_replacedSheetStylesRemoved() throws Exception {
+        List<AccountTransaction> stored = monthlyBills(2017, 2018);
+        SpreadsheetDocument document = reload(spreadsheetProcessor.createSpreadsheet(stored, filters()));
+        int styleCount = countCellStyles(document);
+
+        // The unchanged sheet keeps its styles, and the replaced sheet gets styles of its own
+        for (int i = 1; i <= 3; i++) {
+            stored.add(transaction(LocalDate.of(2018, 12, i), "-10", "ICA Nära"));
+            document = reload(spreadsheetProcessor.updateSpreadsheet(document, rollups(stored), filters()));
+            assertEquals(2 * styleCount, countCellStyles(document));
+        }
+    }
+
+    /**
+     * The digest of the stored transactions is only used by RollupStore.update, which these tests don't call.
+     */
+    private static RollupStore rollups(List<AccountTransaction> stored) {
+        return RollupStore.of(stored, filters(), null);
+    }
+
+    private static int countCellStyles(SpreadsheetDocument document) throws Exception {
+        int count = 0;
+        for (Object style : document.getContentDom().getAutomaticStyles().getStylesForFamily(OdfStyleFamily.TableCell)) {
+            count++;
+        }
+        return count;
+    }
+
     private String getSheetTestData(String name) {
         String result = "";
         ClassLoader classLoader = getClass().getClassLoader();
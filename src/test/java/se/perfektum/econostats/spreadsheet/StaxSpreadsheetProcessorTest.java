@@ -0,0 +1,88 @@
+package se.perfektum.econostats.spreadsheet;
+
+import static org.junit.Assert.assertEquals;
+import static se.perfektum.econostats.dev.TestTransactions.filter;
+import static se.perfektum.econostats.dev.TestTransactions.transaction;
+import static se.perfektum.econostats.spreadsheet.SpreadsheetAssert.assertSameSheets;
+import static se.perfektum.econostats.spreadsheet.SpreadsheetAssert.reload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.odftoolkit.simple.SpreadsheetDocument;
+
+import se.perfektum.econostats.domain.AccountTransaction;
+import se.perfektum.econostats.domain.PayeeFilter;
+import se.perfektum.econostats.utils.JsonUtils;
+
+public class StaxSpreadsheetProcessorTest {
+    private StaxSpreadsheetProcessor spreadsheetProcessor = new StaxSpreadsheetProcessor();
+    private OdfToolkitSpreadsheetProcessor odfToolkitSpreadsheetProcessor = new OdfToolkitSpreadsheetProcessor();
+
+    @Test
+    public void sameSheetsAsOdfToolkit() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String payees = IOUtils.toString(classLoader.getResourceAsStream("payeeFilters-1.json"), "UTF-8");
+        String transactions = IOUtils.toString(classLoader.getResourceAsStream("transactions-1.json"), "UTF-8");
+        List<PayeeFilter> payeeFilters = JsonUtils.getJsonElement(PayeeFilter.class, payees);
+        List<AccountTransaction> accountTransactions = JsonUtils.getJsonElement(AccountTransaction.class, transactions);
+
+        assertSameSheets(reload(odfToolkitSpreadsheetProcessor.createSpreadsheet(accountTransactions, payeeFilters)),
+                spreadsheetProcessor.createSpreadsheet(accountTransactions, payeeFilters));
+    }
+
+    @Test
+    public void aliasWithLineBreaksAndSpaces_sameSheetsAsOdfToolkit() throws Exception {
+        List<PayeeFilter> payeeFilters = Arrays.asList(filter("ICA\nMaxi", "ica"), filter("Coop  Forum\tX", "coop"), filter("Lidl", "lidl"));
+        List<AccountTransaction> accountTransactions = Arrays.asList(
+                transaction(LocalDate.of(2019, 3, 2), "-12.50", "ICA x"),
+                transaction(LocalDate.of(2019, 5, 2), "-99", "coop y"),
+                transaction(LocalDate.of(2020, 1, 9), "-1234.56", "Lidl"));
+
+        assertSameSheets(reload(odfToolkitSpreadsheetProcessor.createSpreadsheet(accountTransactions, payeeFilters)),
+                spreadsheetProcessor.createSpreadsheet(accountTransactions, payeeFilters));
+    }
+
+    @Test
+    public void writeSpreadsheet_mimetypeFirstAndStoredUncompressed() throws Exception {
+        List<PayeeFilter> payeeFilters = Arrays.asList(filter("ICA", "ica"));
+        List<AccountTransaction> accountTransactions = Arrays.asList(
+                transaction(LocalDate.of(2019, 3, 2), "-12.50", "ICA x"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        spreadsheetProcessor.writeSpreadsheet(accountTransactions, payeeFilters, out);
+
+        Set<String> names = new HashSet<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry first = zip.getNextEntry();
+            assertEquals("mimetype", first.getName());
+            assertEquals(ZipEntry.STORED, first.getMethod());
+            assertEquals("application/vnd.oasis.opendocument.spreadsheet", IOUtils.toString(zip, StandardCharsets.US_ASCII));
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(new HashSet<>(Arrays.asList("content.xml", "styles.xml", "META-INF/manifest.xml")), names);
+    }
+
+    @Test
+    public void noMatchedTransactions_noSheets() throws Exception {
+        List<PayeeFilter> payeeFilters = Arrays.asList(filter("ICA", "ica"));
+        List<AccountTransaction> accountTransactions = Arrays.asList(
+                transaction(LocalDate.of(2019, 3, 2), "-12.50", "Coop"));
+
+        SpreadsheetDocument sd = spreadsheetProcessor.createSpreadsheet(accountTransactions, payeeFilters);
+
+        assertEquals(0, sd.getSheetCount());
+    }
+}
@@ -0,0 +1,123 @@
+package se.perfektum.econostats.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.univocity.parsers.csv.CsvParser;
+import com.univocity.parsers.csv.CsvParserSettings;
+
+import se.perfektum.econostats.bank.nordea.NordeaCsvReader;
+import se.perfektum.econostats.domain.AccountTransaction;
+
+public class NordeaCsvV1ToV2ConverterTest {
+    private static final Path TEST_CSV_V1 = Paths.get("src/test/resources/test1.csv");
+
+    private NordeaCsvReader csvReader = new NordeaCsvReader();
+
+    @Test
+    public void convertShouldKeepEveryRowOfV1File() throws Exception {
+        Path outFile = Files.createTempFile("converted", ".csv");
+        try {
+            NordeaCsvV1ToV2Converter.convert(TEST_CSV_V1, outFile);
+
+            assertConverted(outFile);
+        } finally {
+            Files.deleteIfExists(outFile);
+        }
+    }
+
+    @Test
+    public void convertDirectoryShouldConvertEveryCsvFile() throws Exception {
+        Path inDirectory = Files.createTempDirectory("v1");
+        Path outDirectory = inDirectory.resolve("v2");
+        try {
+            Files.copy(TEST_CSV_V1, inDirectory.resolve("a.csv"));
+            Files.copy(TEST_CSV_V1, inDirectory.resolve("b.csv"));
+
+            List<Path> converted = NordeaCsvV1ToV2Converter.convertDirectory(inDirectory, outDirectory);
+
+            converted.sort(null);
+            assertEquals(Arrays.asList(outDirectory.resolve("a.csv"), outDirectory.resolve("b.csv")), converted);
+            for (Path outFile : converted) {
+                assertConverted(outFile);
+            }
+        } finally {
+            for (String name : Arrays.asList("v2/a.csv", "v2/b.csv", "v2", "a.csv", "b.csv")) {
+                Files.deleteIfExists(inDirectory.resolve(name));
+            }
+            Files.deleteIfExists(inDirectory);
+        }
+    }
+
+    @Test
+    public void convertToSameFileShouldBeRejected() throws Exception {
+        Path file = Files.createTempFile("v1", ".csv");
+        try {
+            Files.copy(TEST_CSV_V1, file, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                NordeaCsvV1ToV2Converter.convert(file, file.getParent().resolve(".").resolve(file.getFileName()));
+                fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertArrayEquals(Files.readAllBytes(TEST_CSV_V1), Files.readAllBytes(file));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void convertDirectoryToSameDirectoryShouldBeRejected() throws Exception {
+        Path directory = Files.createTempDirectory("v1");
+        Path file = directory.resolve("a.csv");
+        try {
+            Files.copy(TEST_CSV_V1, file);
+            try {
+                NordeaCsvV1ToV2Converter.convertDirectory(directory, directory.resolve("."));
+                fail("Expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertArrayEquals(Files.readAllBytes(TEST_CSV_V1), Files.readAllBytes(file));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Compares the converted file, which has the columns Datum, Belopp, Transaktion and Saldo, to what NordeaCsvReader reads from the V1 file.
+     */
+    private void assertConverted(Path outFile) throws Exception {
+        List<AccountTransaction> expected = new ArrayList<>();
+        csvReader.readAccountTransactions(TEST_CSV_V1.toString(), expected::add);
+
+        CsvParser parser = new CsvParser(new CsvParserSettings());
+        List<String[]> lines = parser.parseAll(outFile.toFile(), NordeaCsvReader.CHARSET);
+        assertArrayEquals(new String[] { "Datum", "Belopp", "Transaktion", "Saldo" }, Arrays.copyOf(lines.get(0), 4));
+        assertEquals(expected.size(), lines.size() - 1);
+        for (int i = 0; i < expected.size(); i++) {
+            AccountTransaction at = expected.get(i);
+            String[] line = lines.get(i + 1);
+            assertEquals(at.getDate().toString(), line[0]);
+            assertEquals(at.getAmount(), new BigDecimal(line[1]));
+            // The converter keeps the quotes of quoted texts, see NordeaCsvV1ToV2Converter#convert
+            assertEquals(at.getHeader(), unquote(line[2]));
+            assertEquals(at.getBalance(), line[3] == null ? null : new BigDecimal(line[3]));
+        }
+    }
+
+    private static String unquote(String s) {
+        return s.length() > 1 && s.startsWith("\"") && s.endsWith("\"") ? s.substring(1, s.length() - 1) : s;
+    }
+}